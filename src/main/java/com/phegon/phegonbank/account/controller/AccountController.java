@@ -1,11 +1,17 @@
 package com.phegon.phegonbank.account.controller;
 
 import com.phegon.phegonbank.account.services.AccountService;
+import com.phegon.phegonbank.enums.AccountType;
+import com.phegon.phegonbank.enums.Currency;
 import com.phegon.phegonbank.res.Response;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+
 
 @RestController
 @RequestMapping("/api/accounts")
@@ -14,6 +20,22 @@ public class AccountController {
 
     private final AccountService accountService;
 
+    // balance at a point in time (ISO date-time), now when asOf is left out
+    @GetMapping("/{accountNumber}/balance")
+    public ResponseEntity<Response<?>> getBalance(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf
+    ) {
+        return ResponseEntity.ok(accountService.getBalanceAsOf(accountNumber, asOf));
+    }
+
+    // an additional account for the logged in user, e.g. one in another currency
+    @PostMapping
+    public ResponseEntity<Response<?>> openAccount(@RequestParam AccountType accountType,
+                                                   @RequestParam(defaultValue = "USD") Currency currency) {
+        return ResponseEntity.ok(accountService.openAccount(accountType, currency));
+    }
+
     @GetMapping("/me")
     public ResponseEntity<Response<?>> getMyAccounts() {
         return ResponseEntity.ok(accountService.getMyAccounts());
@@ -24,5 +46,18 @@ public class AccountController {
         return ResponseEntity.ok(accountService.closeAccount(accountNumber));
     }
 
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PutMapping("/{accountNumber}/hot")
+    public ResponseEntity<Response<?>> enableHotMode(@PathVariable String accountNumber,
+                                                     @RequestParam(defaultValue = "8") int slots) {
+        return ResponseEntity.ok(accountService.enableHotMode(accountNumber, slots));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @DeleteMapping("/{accountNumber}/hot")
+    public ResponseEntity<Response<?>> disableHotMode(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(accountService.disableHotMode(accountNumber));
+    }
+
 
 }
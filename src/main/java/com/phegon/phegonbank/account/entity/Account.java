@@ -5,6 +5,7 @@ import com.phegon.phegonbank.auth_users.entity.User;
 import com.phegon.phegonbank.enums.AccountStatus;
 import com.phegon.phegonbank.enums.AccountType;
 import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.money.Money;
 import com.phegon.phegonbank.transaction.entity.Transaction;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -32,6 +33,8 @@ public class Account {
     @Column(nullable = false, unique = true, length = 15)
     private String accountNumber;
 
+    // the live balance, updated in place by every posting (the funds check and hot-account slots run against it).
+    // ledger_entries is written alongside it in the same transaction and backs history, balanceAt and statements
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal balance = BigDecimal.ZERO;
 
@@ -54,7 +57,26 @@ public class Account {
 
     private LocalDateTime closedAt;
 
+    // "hot account" mode: when > 0, credits land in this many account_balance_slots rows instead of this row,
+    // and the visible balance is balance + the sum of the slots
+    @Column(nullable = false, columnDefinition = "int default 0")
+    private int balanceSlots;
+
+    // optimistic lock. Bumped by entity saves and by the conditional balance updates in AccountRepo
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt;
 
+
+    // postings do their balance arithmetic as Money, in this account's currency
+    public Money balance() {
+        return Money.of(balance, currency);
+    }
+
+    public void balance(Money balance) {
+        this.balance = balance.toBigDecimal();
+    }
 }
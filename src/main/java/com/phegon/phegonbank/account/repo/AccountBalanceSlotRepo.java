@@ -0,0 +1,44 @@
+package com.phegon.phegonbank.account.repo;
+
+import com.phegon.phegonbank.account.entity.AccountBalanceSlot;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountBalanceSlotRepo extends JpaRepository<AccountBalanceSlot, Long> {
+
+    List<AccountBalanceSlot> findByAccountId(Long accountId);
+
+    // the status check reads the accounts row with a shared lock, so credits still don't queue on each other
+    @Modifying
+    @Query("UPDATE AccountBalanceSlot s SET s.balance = s.balance + :amount " +
+            "WHERE s.account.id = :accountId AND s.slot = :slot AND EXISTS (SELECT a.id FROM Account a " +
+            "WHERE a.id = :accountId AND a.status = com.phegon.phegonbank.enums.AccountStatus.ACTIVE)")
+    int credit(Long accountId, int slot, BigDecimal amount);
+
+    // FOR UPDATE SKIP LOCKED (lock timeout -2): a sweep takes the slots nobody is crediting right now
+    // and never waits on one, so slot locks can't take part in a deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.id = :accountId AND s.balance <> 0")
+    List<AccountBalanceSlot> findUnlockedNonEmpty(Long accountId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceSlot s WHERE s.account.id = :accountId ORDER BY s.slot")
+    List<AccountBalanceSlot> findAllForUpdate(Long accountId);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountBalanceSlot s WHERE s.account.id = :accountId")
+    BigDecimal sumBalance(Long accountId);
+
+    @Query("SELECT s.account.id, SUM(s.balance) FROM AccountBalanceSlot s " +
+            "WHERE s.account.id IN :accountIds GROUP BY s.account.id")
+    List<Object[]> sumBalances(Collection<Long> accountIds);
+}
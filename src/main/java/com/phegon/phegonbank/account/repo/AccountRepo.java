@@ -1,12 +1,55 @@
 package com.phegon.phegonbank.account.repo;
 
 import com.phegon.phegonbank.account.entity.Account;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepo extends JpaRepository<Account, Long> {
     Optional<Account> findByAccountNumber(String accountNumber);
     List<Account> findByUserId(Long userId);
+
+    @Query("SELECT a FROM Account a WHERE a.balanceSlots > 0 " +
+            "AND a.status = com.phegon.phegonbank.enums.AccountStatus.ACTIVE")
+    List<Account> findHotAccounts();
+
+    // [accountNumber, currency] rows, read before a transfer so the credit can be converted
+    @Query("SELECT a.accountNumber, a.currency FROM Account a WHERE a.accountNumber IN :accountNumbers")
+    List<Object[]> findCurrencies(Collection<String> accountNumbers);
+
+    // which of these account numbers exist and are ACTIVE, without loading the accounts
+    @Query("SELECT a.accountNumber FROM Account a WHERE a.accountNumber IN :accountNumbers " +
+            "AND a.status = com.phegon.phegonbank.enums.AccountStatus.ACTIVE")
+    List<String> findActiveAccountNumbers(Collection<String> accountNumbers);
+
+    @EntityGraph(attributePaths = "user")
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    // SELECT ... FOR UPDATE in account number order, the same order single postings touch rows in
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers ORDER BY a.accountNumber")
+    List<Account> findAllForUpdate(Collection<String> accountNumbers);
+
+
+    // Both updates are single statements, so the balance check and the write happen under the same row lock.
+    // Returns 0 when the account doesn't exist, isn't ACTIVE or (for debits) doesn't have enough funds
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "WHERE a.accountNumber = :accountNumber AND a.balance >= :amount " +
+            "AND a.status = com.phegon.phegonbank.enums.AccountStatus.ACTIVE")
+    int debitIfSufficient(String accountNumber, BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 " +
+            "WHERE a.accountNumber = :accountNumber " +
+            "AND a.status = com.phegon.phegonbank.enums.AccountStatus.ACTIVE")
+    int credit(String accountNumber, BigDecimal amount);
 }
@@ -1,17 +1,28 @@
 package com.phegon.phegonbank.account.services;
 
+import com.phegon.phegonbank.account.dtos.AccountBalanceDTO;
 import com.phegon.phegonbank.account.dtos.AccountDTO;
 import com.phegon.phegonbank.account.entity.Account;
 import com.phegon.phegonbank.auth_users.entity.User;
 import com.phegon.phegonbank.enums.AccountType;
+import com.phegon.phegonbank.enums.Currency;
 import com.phegon.phegonbank.res.Response;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface AccountService {
-    Account createAccount(AccountType accountType, User user);
+    Account createAccount(AccountType accountType, Currency currency, User user);
+
+    Response<AccountDTO> openAccount(AccountType accountType, Currency currency);
 
     Response<List<AccountDTO>> getMyAccounts();
 
     Response<?> closeAccount(String accountNumber);
+
+    Response<?> enableHotMode(String accountNumber, int slots);
+
+    Response<?> disableHotMode(String accountNumber);
+
+    Response<AccountBalanceDTO> getBalanceAsOf(String accountNumber, LocalDateTime asOf);
 }
@@ -1,5 +1,6 @@
 package com.phegon.phegonbank.account.services;
 
+import com.phegon.phegonbank.account.dtos.AccountBalanceDTO;
 import com.phegon.phegonbank.account.dtos.AccountDTO;
 import com.phegon.phegonbank.account.entity.Account;
 import com.phegon.phegonbank.account.repo.AccountRepo;
@@ -10,6 +11,7 @@ import com.phegon.phegonbank.enums.AccountType;
 import com.phegon.phegonbank.enums.Currency;
 import com.phegon.phegonbank.exceptions.BadRequestException;
 import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.ledger.services.LedgerService;
 import com.phegon.phegonbank.res.Response;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +23,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 @Service
@@ -32,12 +35,14 @@ public class AccountServiceImpl implements AccountService {
     private final AccountRepo accountRepo;
     private final UserService userService;
     private final ModelMapper modelMapper;
+    private final HotAccountService hotAccountService;
+    private final LedgerService ledgerService;
 
     private final Random random = new Random();
 
 
     @Override
-    public Account createAccount(AccountType accountType, User user) {
+    public Account createAccount(AccountType accountType, Currency currency, User user) {
         log.info("Insdie createAccount()");
 
         String accountNumber = generateAccountNumber();
@@ -45,7 +50,7 @@ public class AccountServiceImpl implements AccountService {
         Account account = Account.builder()
                 .accountNumber(accountNumber)
                 .accountType(accountType)
-                .currency(Currency.USD)
+                .currency(currency)
                 .balance(BigDecimal.ZERO)
                 .status(AccountStatus.ACTIVE)
                 .user(user)
@@ -55,14 +60,35 @@ public class AccountServiceImpl implements AccountService {
         return accountRepo.save(account);
     }
 
+    @Override
+    public Response<AccountDTO> openAccount(AccountType accountType, Currency currency) {
+
+        User user = userService.getCurrentLoggedInUser();
+        Account account = createAccount(accountType, currency, user);
+
+        return Response.<AccountDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Account opened successfully")
+                .data(modelMapper.map(account, AccountDTO.class))
+                .build();
+    }
+
     @Override
     public Response<List<AccountDTO>> getMyAccounts() {
 
         User user = userService.getCurrentLoggedInUser();
 
-        List<AccountDTO> accounts = accountRepo.findByUserId(user.getId())
+        List<Account> userAccounts = accountRepo.findByUserId(user.getId());
+        Map<Long, BigDecimal> balances = hotAccountService.totalBalances(userAccounts);
+
+        // hot accounts report their row balance plus their slots
+        List<AccountDTO> accounts = userAccounts
                 .stream()
-                .map(account -> modelMapper.map(account, AccountDTO.class))
+                .map(account -> {
+                    AccountDTO accountDTO = modelMapper.map(account, AccountDTO.class);
+                    accountDTO.setBalance(balances.get(account.getId()));
+                    return accountDTO;
+                })
                 .toList();
 
         return Response.<List<AccountDTO>>builder()
@@ -84,9 +110,12 @@ public class AccountServiceImpl implements AccountService {
             throw new NotFoundException("Account doesn't belong to you");
         }
 
-        if (account.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+        if (hotAccountService.totalBalance(account).compareTo(BigDecimal.ZERO) > 0) {
             throw new BadRequestException("Account balance must be zero before closing");
         }
+        if (account.getBalanceSlots() > 0) {
+            hotAccountService.disable(account);
+        }
         account.setStatus(AccountStatus.CLOSED);
         account.setClosedAt(LocalDateTime.now());
         accountRepo.save(account);
@@ -99,6 +128,47 @@ public class AccountServiceImpl implements AccountService {
     }
 
 
+    @Override
+    public Response<?> enableHotMode(String accountNumber, int slots) {
+
+        if (slots < 2 || slots > 64) {
+            throw new BadRequestException("Slots must be between 2 and 64");
+        }
+
+        Account account = accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException("Account Not Found"));
+
+        if (account.getStatus() != AccountStatus.ACTIVE) {
+            throw new BadRequestException("Only active accounts can be switched to hot mode");
+        }
+
+        hotAccountService.enable(account, slots);
+
+        return Response.builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Hot mode enabled with " + slots + " balance slots")
+                .build();
+    }
+
+    @Override
+    public Response<?> disableHotMode(String accountNumber) {
+
+        Account account = accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException("Account Not Found"));
+
+        if (account.getBalanceSlots() == 0) {
+            throw new BadRequestException("Account is not in hot mode");
+        }
+
+        hotAccountService.disable(account);
+
+        return Response.builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Hot mode disabled")
+                .build();
+    }
+
+
     private String generateAccountNumber() {
         String accountNumber;
         do {
@@ -114,13 +184,27 @@ public class AccountServiceImpl implements AccountService {
     }
 
 
-}
-
-
-
-
-
+    @Override
+    public Response<AccountBalanceDTO> getBalanceAsOf(String accountNumber, LocalDateTime asOf) {
 
+        User user = userService.getCurrentLoggedInUser();
+        Account account = accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException("Account Not Found"));
 
+        if (!account.getUser().getId().equals(user.getId())) {
+            throw new NotFoundException("Account doesn't belong to you");
+        }
 
+        LocalDateTime at = asOf == null ? LocalDateTime.now() : asOf;
 
+        return Response.<AccountBalanceDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Balance retrieved")
+                .data(AccountBalanceDTO.builder()
+                        .accountNumber(accountNumber)
+                        .asOf(at)
+                        .balance(ledgerService.balanceAt(account.getId(), at))
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.phegon.phegonbank.account.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.entity.AccountBalanceSlot;
+import com.phegon.phegonbank.account.repo.AccountBalanceSlotRepo;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in sharded balances for accounts that receive a lot of credits. A hot account's credits go to one of
+ * N account_balance_slots rows picked at random, so concurrent credits no longer queue on the accounts row.
+ * Debits still run against the accounts row and sweep the slots into it when it runs short.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HotAccountService {
+
+    private final AccountRepo accountRepo;
+    private final AccountBalanceSlotRepo accountBalanceSlotRepo;
+
+    private record HotAccount(Long accountId, int slots) {
+    }
+
+    // account number -> hot account, swapped as a whole on refresh
+    private volatile Map<String, HotAccount> hotAccounts = Map.of();
+
+
+    // other instances pick up enable/disable here. Until they do they credit the accounts row, which is still correct
+    @Scheduled(fixedDelayString = "${account.hot.refresh-interval-ms:30000}")
+    public void refresh() {
+        hotAccounts = accountRepo.findHotAccounts().stream()
+                .collect(Collectors.toUnmodifiableMap(Account::getAccountNumber,
+                        account -> new HotAccount(account.getId(), account.getBalanceSlots())));
+    }
+
+    public boolean isHot(String accountNumber) {
+        return hotAccounts.containsKey(accountNumber);
+    }
+
+
+    // Returns false when the account isn't hot (or its slots were just removed) or no longer ACTIVE, the caller
+    // then credits the accounts row, whose own status check rejects the posting
+    public boolean credit(String accountNumber, BigDecimal amount) {
+        HotAccount hot = hotAccounts.get(accountNumber);
+        if (hot == null) {
+            return false;
+        }
+        int slot = ThreadLocalRandom.current().nextInt(hot.slots());
+        return accountBalanceSlotRepo.credit(hot.accountId(), slot, amount) == 1;
+    }
+
+    // Moves what is sitting in the currently unlocked slots into the accounts row. Must run inside the posting transaction
+    public boolean sweepIntoBalance(String accountNumber) {
+        HotAccount hot = hotAccounts.get(accountNumber);
+        if (hot == null) {
+            return false;
+        }
+        BigDecimal swept = drainSlots(hot.accountId());
+        return swept.signum() > 0 && accountRepo.credit(accountNumber, swept) == 1;
+    }
+
+    // Same as above for callers holding a managed Account (batch and optimistic postings)
+    public boolean sweepIntoBalance(Account account) {
+        if (account.getBalanceSlots() == 0) {
+            return false;
+        }
+        BigDecimal swept = drainSlots(account.getId());
+        account.setBalance(account.getBalance().add(swept));
+        return swept.signum() > 0;
+    }
+
+
+    public BigDecimal totalBalance(Account account) {
+        if (account.getBalanceSlots() == 0) {
+            return account.getBalance();
+        }
+        return account.getBalance().add(accountBalanceSlotRepo.sumBalance(account.getId()));
+    }
+
+    // visible balances for a list of accounts, with one query for all the hot ones
+    public Map<Long, BigDecimal> totalBalances(Collection<Account> accounts) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        List<Long> hotIds = new ArrayList<>();
+
+        for (Account account : accounts) {
+            totals.put(account.getId(), account.getBalance());
+            if (account.getBalanceSlots() > 0) {
+                hotIds.add(account.getId());
+            }
+        }
+
+        if (!hotIds.isEmpty()) {
+            for (Object[] row : accountBalanceSlotRepo.sumBalances(hotIds)) {
+                totals.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+            }
+        }
+        return totals;
+    }
+
+
+    @Transactional
+    public void enable(Account account, int slots) {
+
+        Set<Integer> existing = accountBalanceSlotRepo.findByAccountId(account.getId()).stream()
+                .map(AccountBalanceSlot::getSlot)
+                .collect(Collectors.toSet());
+
+        List<AccountBalanceSlot> missing = new ArrayList<>();
+        for (int slot = 0; slot < slots; slot++) {
+            if (!existing.contains(slot)) {
+                missing.add(AccountBalanceSlot.builder()
+                        .account(account)
+                        .slot(slot)
+                        .balance(BigDecimal.ZERO)
+                        .build());
+            }
+        }
+        accountBalanceSlotRepo.saveAll(missing);
+
+        // slots beyond a lowered count stop receiving credits but are still summed and swept
+        account.setBalanceSlots(slots);
+        accountRepo.save(account);
+        log.info("Hot mode enabled on account {} with {} slots", account.getAccountNumber(), slots);
+
+        refresh();
+    }
+
+    @Transactional
+    public void disable(Account account) {
+
+        // waits for in-flight credits this time, nothing may be left behind in a slot
+        List<AccountBalanceSlot> slots = accountBalanceSlotRepo.findAllForUpdate(account.getId());
+        BigDecimal total = slots.stream()
+                .map(AccountBalanceSlot::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        accountBalanceSlotRepo.deleteAll(slots);
+
+        account.setBalance(account.getBalance().add(total));
+        account.setBalanceSlots(0);
+        accountRepo.save(account);
+        log.info("Hot mode disabled on account {}, {} swept back", account.getAccountNumber(), total);
+
+        refresh();
+    }
+
+
+    private BigDecimal drainSlots(Long accountId) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (AccountBalanceSlot slot : accountBalanceSlotRepo.findUnlockedNonEmpty(accountId)) {
+            total = total.add(slot.getBalance());
+            slot.setBalance(BigDecimal.ZERO);
+        }
+        return total;
+    }
+}
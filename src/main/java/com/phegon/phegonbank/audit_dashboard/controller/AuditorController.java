@@ -1,19 +1,29 @@
 package com.phegon.phegonbank.audit_dashboard.controller;
 
 
+import com.phegon.phegonbank.account.dtos.AccountBalanceDTO;
 import com.phegon.phegonbank.account.dtos.AccountDTO;
 import com.phegon.phegonbank.audit_dashboard.service.AuditorService;
 import com.phegon.phegonbank.auth_users.dtos.UserDTO;
+import com.phegon.phegonbank.enums.ExportFormat;
+import com.phegon.phegonbank.ledger.dtos.LedgerEntryDTO;
 import com.phegon.phegonbank.transaction.dtos.TransactionDTO;
+import com.phegon.phegonbank.transaction.services.TransactionExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,6 +34,7 @@ import java.util.Optional;
 public class AuditorController {
 
     private final AuditorService auditorService;
+    private final TransactionExportService transactionExportService;
 
 
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
@@ -67,6 +78,36 @@ public class AuditorController {
     }
 
 
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+    @GetMapping("/accounts/balance")
+    public ResponseEntity<AccountBalanceDTO> getBalanceAsOf(
+            @RequestParam String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf
+    ) {
+        return auditorService.findBalanceAsOf(accountNumber, asOf)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+
+    // streams the whole history, unlike /transactions/by-account which builds it in memory
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsByAccountNumber(
+            @RequestParam String accountNumber,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions-" + accountNumber + "." + exportFormat.getExtension() + "\"")
+                .body(transactionExportService.exportAccount(accountNumber, exportFormat, from, to));
+    }
+
+
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
     @GetMapping("/transactions/by-id")
     public ResponseEntity<TransactionDTO> getTransactionById(@RequestParam Long id) {
@@ -78,6 +119,30 @@ public class AuditorController {
     }
 
 
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+    @GetMapping("/ledger/by-account")
+    public ResponseEntity<Page<LedgerEntryDTO>> getLedgerEntriesByAccountNumber(
+            @RequestParam String accountNumber,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(auditorService.findLedgerEntriesByAccountNumber(accountNumber, page, size));
+    }
+
+
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+    @GetMapping("/ledger/by-transaction")
+    public ResponseEntity<List<LedgerEntryDTO>> getLedgerEntriesByTransactionId(@RequestParam Long id) {
+
+        List<LedgerEntryDTO> entries = auditorService.findLedgerEntriesByTransactionId(id);
+
+        if (entries.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(entries);
+    }
+
+
 }
 
 
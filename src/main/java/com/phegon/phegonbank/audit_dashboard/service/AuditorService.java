@@ -1,9 +1,13 @@
 package com.phegon.phegonbank.audit_dashboard.service;
 
+import com.phegon.phegonbank.account.dtos.AccountBalanceDTO;
 import com.phegon.phegonbank.account.dtos.AccountDTO;
 import com.phegon.phegonbank.auth_users.dtos.UserDTO;
+import com.phegon.phegonbank.ledger.dtos.LedgerEntryDTO;
 import com.phegon.phegonbank.transaction.dtos.TransactionDTO;
+import org.springframework.data.domain.Page;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -19,4 +23,10 @@ public interface AuditorService {
     List<TransactionDTO> findTransactionsByAccountNumber(String accountNumber);
 
     Optional<TransactionDTO> findTransactionById(Long transactionId);
+
+    Page<LedgerEntryDTO> findLedgerEntriesByAccountNumber(String accountNumber, int page, int size);
+
+    List<LedgerEntryDTO> findLedgerEntriesByTransactionId(Long transactionId);
+
+    Optional<AccountBalanceDTO> findBalanceAsOf(String accountNumber, LocalDateTime asOf);
 }
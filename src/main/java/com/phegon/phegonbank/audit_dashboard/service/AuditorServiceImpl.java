@@ -1,19 +1,27 @@
 package com.phegon.phegonbank.audit_dashboard.service;
 
+import com.phegon.phegonbank.account.dtos.AccountBalanceDTO;
 import com.phegon.phegonbank.account.dtos.AccountDTO;
 import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
 import com.phegon.phegonbank.auth_users.dtos.UserDTO;
 import com.phegon.phegonbank.auth_users.repo.UserRepo;
+import com.phegon.phegonbank.ledger.dtos.LedgerEntryDTO;
+import com.phegon.phegonbank.ledger.services.LedgerService;
 import com.phegon.phegonbank.transaction.dtos.TransactionDTO;
 import com.phegon.phegonbank.transaction.repo.TransactionRepo;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -21,8 +29,10 @@ public class AuditorServiceImpl implements AuditorService {
 
     private final UserRepo userRepo;
     private final AccountRepo accountRepo;
+    private final HotAccountService hotAccountService;
     private final TransactionRepo transactionRepo;
     private final ModelMapper modelMapper;
+    private final LedgerService ledgerService;
 
 
     @Override
@@ -43,20 +53,34 @@ public class AuditorServiceImpl implements AuditorService {
     public Optional<UserDTO> findUserByEmail(String email) {
 
         return userRepo.findByEmail(email)
-                .map(user -> modelMapper.map(user, UserDTO.class));
+                .map(user -> {
+                    UserDTO userDTO = modelMapper.map(user, UserDTO.class);
+                    // hot accounts report their row balance plus their slots
+                    if (user.getAccounts() != null && userDTO.getAccounts() != null) {
+                        Map<Long, BigDecimal> balances = hotAccountService.totalBalances(user.getAccounts());
+                        userDTO.getAccounts().forEach(account ->
+                                account.setBalance(balances.getOrDefault(account.getId(), account.getBalance())));
+                    }
+                    return userDTO;
+                });
     }
 
     @Override
     public Optional<AccountDTO> findAccountDetailsByAccountNumber(String accountNumber) {
 
         return accountRepo.findByAccountNumber(accountNumber)
-                .map(account -> modelMapper.map(account, AccountDTO.class));
+                .map(account -> {
+                    AccountDTO accountDTO = modelMapper.map(account, AccountDTO.class);
+                    accountDTO.setBalance(hotAccountService.totalBalance(account));
+                    return accountDTO;
+                });
     }
 
     @Override
     public List<TransactionDTO> findTransactionsByAccountNumber(String accountNumber) {
 
-        return transactionRepo.findByAccount_AccountNumber(accountNumber).stream()
+        // postings held for review have no ledger legs yet, listed first
+        return Stream.concat(transactionRepo.findPending(accountNumber).stream(), transactionRepo.findHistory(accountNumber).stream())
                 .map(transaction -> modelMapper.map(transaction, TransactionDTO.class))
                 .collect(Collectors.toList());
     }
@@ -67,4 +91,25 @@ public class AuditorServiceImpl implements AuditorService {
                 .map(transaction -> modelMapper.map(transaction, TransactionDTO.class));
     }
 
+    @Override
+    public Page<LedgerEntryDTO> findLedgerEntriesByAccountNumber(String accountNumber, int page, int size) {
+        return ledgerService.findEntriesByAccountNumber(accountNumber, page, size);
+    }
+
+    @Override
+    public List<LedgerEntryDTO> findLedgerEntriesByTransactionId(Long transactionId) {
+        return ledgerService.findEntriesByTransactionId(transactionId);
+    }
+
+    @Override
+    public Optional<AccountBalanceDTO> findBalanceAsOf(String accountNumber, LocalDateTime asOf) {
+        LocalDateTime at = asOf == null ? LocalDateTime.now() : asOf;
+        return accountRepo.findByAccountNumber(accountNumber)
+                .map(account -> AccountBalanceDTO.builder()
+                        .accountNumber(accountNumber)
+                        .asOf(at)
+                        .balance(ledgerService.balanceAt(account.getId(), at))
+                        .build());
+    }
+
 }
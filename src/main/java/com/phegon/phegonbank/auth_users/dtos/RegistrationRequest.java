@@ -1,5 +1,6 @@
 package com.phegon.phegonbank.auth_users.dtos;
 
+import com.phegon.phegonbank.enums.Currency;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
@@ -24,4 +25,6 @@ public class RegistrationRequest {
 
     @NotBlank(message = "Password is required")
     private String password;
+
+    private Currency currency; // of the first account, USD when left out
 }
@@ -93,7 +93,8 @@ public class AuthServiceImpl implements AuthService {
         User savedUser = userRepo.save(user);
 
         //Create ACCOUNT NUMBERT FOR THE USER
-        Account savedAccount = accountService.createAccount(AccountType.SAVINGS, savedUser);
+        Currency currency = request.getCurrency() != null ? request.getCurrency() : Currency.USD;
+        Account savedAccount = accountService.createAccount(AccountType.SAVINGS, currency, savedUser);
 
         //SEND WELCOME EMAIL
         Map<String, Object> vars = new HashMap<>();
@@ -114,7 +115,7 @@ public class AuthServiceImpl implements AuthService {
         accountVars.put("name", savedUser.getFirstName());
         accountVars.put("accountNumber", savedAccount.getAccountNumber());
         accountVars.put("accountType", AccountType.SAVINGS.name());
-        accountVars.put("currency", Currency.USD);
+        accountVars.put("currency", savedAccount.getCurrency());
 
         NotificationDTO accountCreatedEmail = NotificationDTO.builder()
                 .recipient(savedUser.getEmail())
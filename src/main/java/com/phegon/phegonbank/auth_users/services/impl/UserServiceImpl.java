@@ -1,5 +1,7 @@
 package com.phegon.phegonbank.auth_users.services.impl;
 
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.services.HotAccountService;
 import com.phegon.phegonbank.auth_users.dtos.UpdatePasswordRequest;
 import com.phegon.phegonbank.auth_users.dtos.UserDTO;
 import com.phegon.phegonbank.auth_users.entity.User;
@@ -24,11 +26,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -42,6 +46,7 @@ public class UserServiceImpl implements UserService {
     private final NotificationService notificationService;
     private final PasswordEncoder passwordEncoder;
     private final ModelMapper modelMapper;
+    private final HotAccountService hotAccountService;
 
     private final S3Service s3Service;
 
@@ -71,7 +76,7 @@ public class UserServiceImpl implements UserService {
     public Response<UserDTO> getMyProfile() {
 
         User user = getCurrentLoggedInUser();
-        UserDTO userDTO = modelMapper.map(user, UserDTO.class);
+        UserDTO userDTO = toDTO(user, hotAccountService.totalBalances(accountsOf(List.of(user))));
 
         return Response.<UserDTO>builder()
                 .statusCode(HttpStatus.OK.value())
@@ -85,7 +90,9 @@ public class UserServiceImpl implements UserService {
 
         Page<User> users = userRepo.findAll(PageRequest.of(page, size));
 
-        Page<UserDTO> userDTOS = users.map(user -> modelMapper.map(user, UserDTO.class));
+        // one slot query for the hot accounts of the whole page
+        Map<Long, BigDecimal> balances = hotAccountService.totalBalances(accountsOf(users.getContent()));
+        Page<UserDTO> userDTOS = users.map(user -> toDTO(user, balances));
 
         return Response.<Page<UserDTO>>builder()
                 .statusCode(HttpStatus.OK.value())
@@ -215,21 +222,21 @@ public class UserServiceImpl implements UserService {
             throw new RuntimeException(e.getMessage());
         }
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
 
+    // the mapped accounts only carry the accounts row balance, hot accounts report their slots too
+    private UserDTO toDTO(User user, Map<Long, BigDecimal> balances) {
+        UserDTO userDTO = modelMapper.map(user, UserDTO.class);
+        if (userDTO.getAccounts() != null) {
+            userDTO.getAccounts().forEach(account -> account.setBalance(balances.getOrDefault(account.getId(), account.getBalance())));
+        }
+        return userDTO;
+    }
 
+    private static List<Account> accountsOf(List<User> users) {
+        return users.stream()
+                .filter(user -> user.getAccounts() != null)
+                .flatMap(user -> user.getAccounts().stream())
+                .toList();
+    }
+}
@@ -46,6 +46,18 @@ public class S3Service {
         return s3Client.utilities().getUrl(builder -> builder.bucket(bucketName).key(s3Key)).toString();
     }
 
+    // for content we generate ourselves (e.g. statements), stored under a key we choose
+    public void uploadBytes(String s3Key, byte[] content, String contentType) throws S3Exception {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(s3Key)
+                .contentType(contentType)
+                .contentLength((long) content.length)
+                .build();
+
+        s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
+    }
+
     public boolean deleteFile(String fileUrl) {
         try {
             String key = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
@@ -3,24 +3,36 @@ package com.phegon.phegonbank.config;
 
 import org.modelmapper.ModelMapper;
 import org.modelmapper.convention.MatchingStrategies;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.thymeleaf.cache.StandardCacheManager;
 import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 @Configuration
 public class AppConfig {
 
+    // parsed templates are cached for cache-ttl-ms; they ship in the jar, the TTL only bounds how long an entry lives
     @Bean
-    public SpringTemplateEngine templateEngine(){
+    public SpringTemplateEngine templateEngine(@Value("${templates.cache-ttl-ms:86400000}") long cacheTtlMs,
+                                               @Value("${templates.cache-size:200}") int cacheSize){
         SpringTemplateEngine templateEngine = new SpringTemplateEngine();
 
         ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
         templateResolver.setPrefix("templates/");
         templateResolver.setSuffix(".html");
         templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setCacheable(true);
+        templateResolver.setCacheTTLMs(cacheTtlMs);
+
+        StandardCacheManager cacheManager = new StandardCacheManager();
+        cacheManager.setTemplateCacheMaxSize(cacheSize);
 
         templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setCacheManager(cacheManager);
         return templateEngine;
     }
     
@@ -0,0 +1,40 @@
+package com.phegon.phegonbank.config;
+
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the fixed worker pools used by the background jobs, so they all follow spring.threads.virtual.enabled
+ * like Tomcat and @Async do. With virtual threads the pool size still bounds how many tasks run at once,
+ * which is what keeps a job from taking more DB connections than it was given.
+ */
+@Component
+public class BackgroundExecutors {
+
+    private final boolean virtualThreads;
+
+    public BackgroundExecutors(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+
+    public ExecutorService newFixedPool(String name, int workers) {
+        return Executors.newFixedThreadPool(workers, threadFactory(name));
+    }
+
+    // for pools that need their own queue or rejection policy
+    public ThreadFactory threadFactory(String name) {
+        return virtualThreads
+                ? Thread.ofVirtual().name(name + "-", 1).factory()
+                : Thread.ofPlatform().name(name + "-", 1).daemon().factory();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+}
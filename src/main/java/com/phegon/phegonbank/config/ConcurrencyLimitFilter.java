@@ -0,0 +1,118 @@
+package com.phegon.phegonbank.config;
+
+
+import com.phegon.phegonbank.res.Response;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the requests in progress at a multiple of the Hikari pool size. With platform threads Tomcat's thread pool
+ * did this implicitly; with virtual threads every request gets a thread, and without a cap thousands of them
+ * would just queue inside Hikari until connection-timeout. Here they wait up to max-wait-ms for a permit and are
+ * then turned away with 503, before they have done any work.
+ * An async response (the exports) gives its permit back when the first dispatch returns, ExportPermits caps those.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(ObjectMapper objectMapper, DataSource dataSource, MeterRegistry meterRegistry,
+                                  @Value("${concurrency-limit.enabled:${spring.threads.virtual.enabled:false}}") boolean enabled,
+                                  @Value("${concurrency-limit.requests-per-connection:2}") int requestsPerConnection,
+                                  @Value("${concurrency-limit.max-requests:0}") int maxRequests,
+                                  @Value("${concurrency-limit.max-wait-ms:2000}") long maxWaitMs) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxWaitMs = maxWaitMs;
+
+        // 0 = derived from the connection pool, so resizing the pool moves the cap with it
+        int limit = maxRequests;
+        if (limit <= 0) {
+            int poolSize = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+            limit = poolSize * requestsPerConnection;
+        }
+        this.permits = new Semaphore(limit);
+        this.rejected = Counter.builder("http.concurrency.rejected").register(meterRegistry);
+
+        int cap = limit;
+        Gauge.builder("http.concurrency.in-flight", permits, p -> cap - p.availablePermits()).register(meterRegistry);
+        Gauge.builder("http.concurrency.waiting", permits, Semaphore::getQueueLength).register(meterRegistry);
+
+        if (enabled) {
+            log.info("Concurrent requests limited to {}", limit);
+        }
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            rejected.increment();
+            reject(response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+
+    private void reject(HttpServletResponse response) throws IOException {
+        Response<?> errorResponse = Response.builder()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value()) //503
+                .message("Server is busy, please retry shortly")
+                .build();
+
+        response.setContentType("application/json");
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.getWriter().write(objectMapper.writeValueAsString(errorResponse));
+    }
+}
@@ -0,0 +1,117 @@
+package com.phegon.phegonbank.config;
+
+
+import com.phegon.phegonbank.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the transaction exports. An export keeps its streaming connection until the download ends, which can take
+ * up to transaction.export.timeout-ms, and ConcurrencyLimitFilter lets go of a request once its first dispatch
+ * returns. So each export takes a permit here before the response starts and holds it until the stream ends;
+ * with none free it is turned away with 429 instead of queueing for a connection. Exports are the only async
+ * responses, so their pool, sized to the permits, is MVC's async executor.
+ */
+@Configuration
+public class ExportPermits implements WebMvcConfigurer {
+
+    private static final String PERMIT_ATTRIBUTE = ExportPermits.class.getName() + ".permit";
+
+    private final Semaphore permits;
+    private final ExecutorService exportPool;
+    private final Counter rejected;
+
+    public ExportPermits(BackgroundExecutors backgroundExecutors, MeterRegistry meterRegistry,
+                         @Value("${transaction.export.max-concurrent:2}") int maxConcurrent) {
+        int limit = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(limit);
+        this.exportPool = backgroundExecutors.newFixedPool("export", limit);
+        this.rejected = Counter.builder("transaction.export.rejected")
+                .description("Exports turned away because every export permit was taken")
+                .register(meterRegistry);
+        Gauge.builder("transaction.export.active", permits, p -> limit - p.availablePermits()).register(meterRegistry);
+    }
+
+
+    // on the request thread, after the export's checks and before the body is returned
+    public Permit acquire() {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many exports are running, please retry in a minute");
+        }
+        Permit permit = new Permit(permits);
+        RequestContextHolder.currentRequestAttributes().setAttribute(PERMIT_ATTRIBUTE, permit, RequestAttributes.SCOPE_REQUEST);
+        return permit;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(exportPool));
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                // the request ended (timeout, client gone) before the export got a thread, its body will never run
+                if (request.getAttribute(PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Permit permit) {
+                    permit.releaseIfNotStarted();
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        exportPool.shutdownNow();
+    }
+
+
+    /**
+     * One export's slot. The body calls start() before it opens the cursor and release() when it is done; a body
+     * that never ran is released by the async completion instead.
+     */
+    public static final class Permit {
+
+        private static final int NEW = 0;
+        private static final int STARTED = 1;
+        private static final int RELEASED = 2;
+
+        private final Semaphore permits;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        private Permit(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        // false when the request was already given up, the body must not start the export then
+        public boolean start() {
+            return state.compareAndSet(NEW, STARTED);
+        }
+
+        public void release() {
+            if (state.getAndSet(RELEASED) != RELEASED) {
+                permits.release();
+            }
+        }
+
+        private void releaseIfNotStarted() {
+            if (state.compareAndSet(NEW, RELEASED)) {
+                permits.release();
+            }
+        }
+    }
+}
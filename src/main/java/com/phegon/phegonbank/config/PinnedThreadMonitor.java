@@ -0,0 +1,125 @@
+package com.phegon.phegonbank.config;
+
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches for virtual threads pinned to their carrier (blocking inside synchronized, or in native code) using the
+ * JDK's jdk.VirtualThreadPinned JFR event. Only runs when virtual threads are on. Counts and durations go to the
+ * virtual-threads.pinned meters, and /actuator/pinning lists where the pinning happened, by the first frame
+ * outside the JDK, so it can be traced to our code or to a driver.
+ */
+@Component
+@Endpoint(id = "pinning")
+@Slf4j
+public class PinnedThreadMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_SITES = 200;
+
+    private final boolean virtualThreads;
+    private final Duration threshold;
+    private final Counter pinned;
+    private final Timer pinnedTime;
+
+    // call site -> times pinned there
+    private final Map<String, LongAdder> sites = new ConcurrentHashMap<>();
+
+    private RecordingStream recording;
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${virtual-threads.pinned-threshold-ms:20}") long thresholdMs) {
+        this.virtualThreads = virtualThreads;
+        this.threshold = Duration.ofMillis(thresholdMs);
+        this.pinned = Counter.builder("virtual-threads.pinned").register(meterRegistry);
+        this.pinnedTime = Timer.builder("virtual-threads.pinned.duration").register(meterRegistry);
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!virtualThreads || recording != null) {
+            return;
+        }
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::record);
+        recording.startAsync();
+        log.info("Watching for virtual threads pinned longer than {} ms", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+
+    @ReadOperation
+    public Map<String, Object> pinning() {
+        Map<String, Long> bySite = new LinkedHashMap<>();
+        sites.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(entry -> bySite.put(entry.getKey(), entry.getValue().sum()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("virtualThreads", virtualThreads);
+        report.put("thresholdMs", threshold.toMillis());
+        report.put("pinnedEvents", (long) pinned.count());
+        report.put("sites", bySite);
+        return report;
+    }
+
+
+    private void record(RecordedEvent event) {
+        pinned.increment();
+        pinnedTime.record(event.getDuration());
+
+        String site = site(event.getStackTrace());
+        LongAdder count = sites.get(site);
+        if (count == null) {
+            if (sites.size() >= MAX_SITES) {
+                return;
+            }
+            count = sites.computeIfAbsent(site, k -> new LongAdder());
+            log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), site);
+        }
+        count.increment();
+    }
+
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk";
+    }
+}
@@ -0,0 +1,25 @@
+package com.phegon.phegonbank.csv;
+
+
+/**
+ * Field escaping shared by every CSV the app writes (transaction exports, statements, payroll reports).
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    // quote only when needed; a leading formula character is neutralised so spreadsheets don't evaluate it
+    public static String value(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,6 @@
+package com.phegon.phegonbank.enums;
+
+public enum BatchMode {
+    ALL_OR_NOTHING, // one database transaction, any failed item rolls the whole batch back
+    BEST_EFFORT // each chunk commits on its own, failed items are skipped and reported
+}
@@ -0,0 +1,6 @@
+package com.phegon.phegonbank.enums;
+
+public enum ConcurrencyMode {
+    ATOMIC, // conditional UPDATE statements, the database serializes writers on the row
+    OPTIMISTIC // read, modify and save with a @Version check, conflicts are retried
+}
@@ -0,0 +1,6 @@
+package com.phegon.phegonbank.enums;
+
+public enum EntryDirection {
+    DEBIT, // money leaves the account
+    CREDIT // money enters the account
+}
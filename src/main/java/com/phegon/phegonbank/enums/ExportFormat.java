@@ -0,0 +1,34 @@
+package com.phegon.phegonbank.enums;
+
+import com.phegon.phegonbank.exceptions.BadRequestException;
+
+public enum ExportFormat {
+    CSV("text/csv", "csv"), // with a header row
+    NDJSON("application/x-ndjson", "ndjson"); // one JSON object per line
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // ?format=csv or ?format=ndjson, any case
+    public static ExportFormat parse(String format) {
+        for (ExportFormat value : values()) {
+            if (value.name().equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new BadRequestException("Unsupported export format: " + format);
+    }
+}
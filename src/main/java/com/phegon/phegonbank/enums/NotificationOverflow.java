@@ -0,0 +1,7 @@
+package com.phegon.phegonbank.enums;
+
+// what happens to an email when the notification queue is full
+public enum NotificationOverflow {
+    SPILL,      // written to notification_outbox and sent later by the outbox dispatcher
+    CALLER_RUNS // sent on the calling thread
+}
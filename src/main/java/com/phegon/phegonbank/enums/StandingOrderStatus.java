@@ -0,0 +1,8 @@
+package com.phegon.phegonbank.enums;
+
+public enum StandingOrderStatus {
+    ACTIVE, // runs on its next due time
+    PAUSED, // stopped after too many failed runs
+    CANCELLED, // by the customer
+    COMPLETED // past its end date
+}
@@ -0,0 +1,7 @@
+package com.phegon.phegonbank.enums;
+
+// what happens to a posting that breaks a velocity rule
+public enum VelocityAction {
+    REJECT, // fails with 400
+    REVIEW  // saved as PENDING without moving any money
+}
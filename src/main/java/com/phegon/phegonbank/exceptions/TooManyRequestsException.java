@@ -0,0 +1,8 @@
+package com.phegon.phegonbank.exceptions;
+
+// thrown when a bounded resource (e.g. the export slots) is all in use. Nothing was started, the client can retry later
+public class TooManyRequestsException extends RuntimeException{
+    public TooManyRequestsException(String error){
+        super(error);
+    }
+}
@@ -0,0 +1,8 @@
+package com.phegon.phegonbank.exceptions;
+
+// thrown when a posting could not get its account locks in time. Nothing was applied, so the client can safely retry
+public class TransactionConflictException extends RuntimeException{
+    public TransactionConflictException(String error){
+        super(error);
+    }
+}
@@ -0,0 +1,30 @@
+package com.phegon.phegonbank.fx.controller;
+
+
+import com.phegon.phegonbank.fx.dtos.FxRateRequest;
+import com.phegon.phegonbank.fx.services.FxRateService;
+import com.phegon.phegonbank.res.Response;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/fx/rates")
+@RequiredArgsConstructor
+public class FxRateController {
+
+    private final FxRateService fxRateService;
+
+    @GetMapping
+    public ResponseEntity<Response<?>> getRates() {
+        return ResponseEntity.ok(fxRateService.getRates());
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PutMapping
+    public ResponseEntity<Response<?>> setRate(@RequestBody @Valid FxRateRequest request) {
+        return ResponseEntity.ok(fxRateService.setRate(request));
+    }
+}
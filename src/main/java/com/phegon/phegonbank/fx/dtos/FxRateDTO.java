@@ -0,0 +1,30 @@
+package com.phegon.phegonbank.fx.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.Currency;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FxRateDTO {
+
+    private Currency baseCurrency;
+
+    private Currency quoteCurrency;
+
+    private BigDecimal rate;
+
+    private LocalDateTime updatedAt;
+}
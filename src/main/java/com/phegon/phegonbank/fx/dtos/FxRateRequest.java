@@ -0,0 +1,25 @@
+package com.phegon.phegonbank.fx.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.phegon.phegonbank.enums.Currency;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FxRateRequest {
+
+    @NotNull(message = "Base currency is required")
+    private Currency baseCurrency;
+
+    @NotNull(message = "Quote currency is required")
+    private Currency quoteCurrency;
+
+    @NotNull(message = "Rate is required")
+    @DecimalMin(value = "0.0000000001", message = "Rate must be greater than zero")
+    private BigDecimal rate;
+}
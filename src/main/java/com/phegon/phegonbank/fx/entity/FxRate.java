@@ -0,0 +1,41 @@
+package com.phegon.phegonbank.fx.entity;
+
+
+import com.phegon.phegonbank.enums.Currency;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 1 baseCurrency = rate quoteCurrency. The reverse pair is derived when it isn't stored
+@Entity
+@Data
+@Builder
+@Table(name = "fx_rates",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fx_rates_pair", columnNames = {"base_currency", "quote_currency"}))
+@AllArgsConstructor
+@NoArgsConstructor
+public class FxRate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 3)
+    private Currency baseCurrency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 3)
+    private Currency quoteCurrency;
+
+    @Column(nullable = false, precision = 19, scale = 10)
+    private BigDecimal rate;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
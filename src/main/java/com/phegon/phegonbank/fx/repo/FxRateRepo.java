@@ -0,0 +1,12 @@
+package com.phegon.phegonbank.fx.repo;
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.fx.entity.FxRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface FxRateRepo extends JpaRepository<FxRate, Long> {
+
+    Optional<FxRate> findByBaseCurrencyAndQuoteCurrency(Currency baseCurrency, Currency quoteCurrency);
+}
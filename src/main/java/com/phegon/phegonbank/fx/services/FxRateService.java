@@ -0,0 +1,17 @@
+package com.phegon.phegonbank.fx.services;
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.fx.dtos.FxRateDTO;
+import com.phegon.phegonbank.fx.dtos.FxRateRequest;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface FxRateService {
+    // amount the destination of a transfer gets, in its currency. Records the rate on the transaction when they differ
+    BigDecimal convertTransfer(Transaction transaction, Currency sourceCurrency, Currency destinationCurrency);
+    Response<List<FxRateDTO>> getRates();
+    Response<FxRateDTO> setRate(FxRateRequest request);
+}
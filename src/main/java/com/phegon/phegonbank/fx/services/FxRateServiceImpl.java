@@ -0,0 +1,123 @@
+package com.phegon.phegonbank.fx.services;
+
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.InvalidTransactionException;
+import com.phegon.phegonbank.fx.dtos.FxRateDTO;
+import com.phegon.phegonbank.fx.dtos.FxRateRequest;
+import com.phegon.phegonbank.fx.entity.FxRate;
+import com.phegon.phegonbank.fx.repo.FxRateRepo;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Exchange rates for cross-currency transfers. Postings read the current FxSnapshot; a refresh builds a new
+ * one off to the side and swaps the reference, so it never blocks a posting and a posting never sees half a refresh.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FxRateServiceImpl implements FxRateService {
+
+    private final FxRateRepo fxRateRepo;
+
+    private volatile FxSnapshot snapshot = FxSnapshot.EMPTY;
+
+
+    // other instances pick up rate changes here
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${fx.refresh-interval-ms:60000}")
+    public void refresh() {
+        snapshot = new FxSnapshot(fxRateRepo.findAll());
+    }
+
+
+    @Override
+    public BigDecimal convertTransfer(Transaction transaction, Currency sourceCurrency, Currency destinationCurrency) {
+
+        // accounts opened before currencies were picked are all USD
+        if (sourceCurrency == destinationCurrency || sourceCurrency == null || destinationCurrency == null) {
+            return transaction.getAmount();
+        }
+
+        BigDecimal rate = snapshot.rate(sourceCurrency, destinationCurrency);
+        if (rate == null) {
+            throw new InvalidTransactionException("No exchange rate from " + sourceCurrency + " to " + destinationCurrency);
+        }
+
+        BigDecimal converted = transaction.getAmount().multiply(rate).setScale(2, RoundingMode.HALF_EVEN);
+        if (converted.signum() <= 0) {
+            throw new InvalidTransactionException("Amount is too small to convert to " + destinationCurrency);
+        }
+
+        transaction.setExchangeRate(rate);
+        transaction.setConvertedAmount(converted);
+        return converted;
+    }
+
+
+    @Override
+    public Response<List<FxRateDTO>> getRates() {
+
+        List<FxRateDTO> rates = fxRateRepo.findAll().stream()
+                .map(this::toDTO)
+                .toList();
+
+        return Response.<List<FxRateDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Exchange rates retrieved")
+                .data(rates)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public Response<FxRateDTO> setRate(FxRateRequest request) {
+
+        if (request.getBaseCurrency() == request.getQuoteCurrency()) {
+            throw new BadRequestException("Base and quote currency cannot be the same");
+        }
+
+        FxRate rate = fxRateRepo.findByBaseCurrencyAndQuoteCurrency(request.getBaseCurrency(), request.getQuoteCurrency())
+                .orElseGet(() -> FxRate.builder()
+                        .baseCurrency(request.getBaseCurrency())
+                        .quoteCurrency(request.getQuoteCurrency())
+                        .build());
+        rate.setRate(request.getRate());
+        rate.setUpdatedAt(LocalDateTime.now());
+
+        FxRate saved = fxRateRepo.save(rate);
+        log.info("Exchange rate {}/{} set to {}", saved.getBaseCurrency(), saved.getQuoteCurrency(), saved.getRate());
+
+        refresh();
+
+        return Response.<FxRateDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Exchange rate updated")
+                .data(toDTO(saved))
+                .build();
+    }
+
+
+    private FxRateDTO toDTO(FxRate rate) {
+        return FxRateDTO.builder()
+                .baseCurrency(rate.getBaseCurrency())
+                .quoteCurrency(rate.getQuoteCurrency())
+                .rate(rate.getRate())
+                .updatedAt(rate.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.phegon.phegonbank.fx.services;
+
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.fx.entity.FxRate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Every rate loaded from fx_rates, in a matrix indexed by Currency ordinal. Built once per refresh and never
+ * changed after, so postings read it without locks and a lookup is two array reads.
+ */
+final class FxSnapshot {
+
+    static final FxSnapshot EMPTY = new FxSnapshot(List.of());
+
+    private static final int INVERSE_SCALE = 10;
+
+    private final BigDecimal[][] rates;
+
+    FxSnapshot(List<FxRate> stored) {
+        int currencies = Currency.values().length;
+        this.rates = new BigDecimal[currencies][currencies];
+
+        for (Currency currency : Currency.values()) {
+            rates[currency.ordinal()][currency.ordinal()] = BigDecimal.ONE;
+        }
+        // stored pairs win over derived reverse ones, so derive first
+        for (FxRate rate : stored) {
+            BigDecimal inverse = BigDecimal.ONE.divide(rate.getRate(), INVERSE_SCALE, RoundingMode.HALF_EVEN);
+            rates[rate.getQuoteCurrency().ordinal()][rate.getBaseCurrency().ordinal()] = inverse;
+        }
+        for (FxRate rate : stored) {
+            rates[rate.getBaseCurrency().ordinal()][rate.getQuoteCurrency().ordinal()] = rate.getRate();
+        }
+    }
+
+    // null when there is no rate for the pair
+    BigDecimal rate(Currency from, Currency to) {
+        return rates[from.ordinal()][to.ordinal()];
+    }
+}
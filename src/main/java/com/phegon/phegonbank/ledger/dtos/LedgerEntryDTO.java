@@ -0,0 +1,34 @@
+package com.phegon.phegonbank.ledger.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.EntryDirection;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntryDTO {
+
+    private Long id;
+
+    private Long transactionId;
+
+    private String accountNumber; // null for the cash book leg
+
+    private EntryDirection direction;
+
+    private BigDecimal amount;
+
+    private LocalDateTime postedAt;
+}
@@ -0,0 +1,41 @@
+package com.phegon.phegonbank.ledger.entity;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * An account's ledger balance at the end of a day. Written by BalanceSnapshotJob for every day the account had
+ * postings, so the latest snapshot before a date plus the legs after it always gives the balance at that date.
+ */
+@Entity
+@Data
+@Builder
+@Table(name = "account_balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_account_balance_snapshot_day", columnNames = {"account_id", "day"}),
+        indexes = @Index(name = "idx_account_balance_snapshots_day", columnList = "day"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountBalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal closingBalance;
+}
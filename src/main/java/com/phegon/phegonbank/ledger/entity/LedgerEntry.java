@@ -0,0 +1,68 @@
+package com.phegon.phegonbank.ledger.entity;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.enums.EntryDirection;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One leg of a posting. Every transaction writes legs whose debits and credits add up to the same amount,
+ * and rows are never updated or deleted. A leg without an account is the bank's cash book, the other side of
+ * deposits and withdrawals. Amounts are in the leg's account currency, so the two legs of a cross-currency
+ * transfer match at the exchange rate recorded on the transaction.
+ */
+@Entity
+@Immutable
+@Data
+@Builder
+@Table(name = "ledger_entries",
+        // one leg per account and side of a transaction, so a backfill or replay can never double a posting
+        uniqueConstraints = @UniqueConstraint(name = "uk_ledger_entries_leg", columnNames = {"transaction_id", "account_key", "direction"}),
+        indexes = {
+        // also serves account transaction history, transaction_id makes it covering for the seek
+        @Index(name = "idx_ledger_entries_account_history", columnList = "account_id, postedAt, transaction_id"),
+        @Index(name = "idx_ledger_entries_transaction", columnList = "transaction_id"),
+        // the daily snapshot job reads one day of legs across all accounts
+        @Index(name = "idx_ledger_entries_posted", columnList = "postedAt")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private Transaction transaction;
+
+    // null = cash book
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id")
+    private Account account;
+
+    // account_id with 0 for the cash book, a NULL account_id would let the unique key take duplicates
+    @Column(name = "account_key", insertable = false, updatable = false,
+            columnDefinition = "BIGINT AS (COALESCE(account_id, 0)) STORED")
+    private Long accountKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private EntryDirection direction;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime postedAt;
+}
@@ -0,0 +1,37 @@
+package com.phegon.phegonbank.ledger.repo;
+
+import com.phegon.phegonbank.ledger.entity.AccountBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface AccountBalanceSnapshotRepo extends JpaRepository<AccountBalanceSnapshot, Long> {
+
+    // served by the (account_id, day) unique key
+    Optional<AccountBalanceSnapshot> findFirstByAccount_IdAndDayLessThanOrderByDayDesc(Long accountId, LocalDate day);
+
+    @Query("SELECT MAX(s.day) FROM AccountBalanceSnapshot s")
+    Optional<LocalDate> findLastDay();
+
+    @Query("SELECT MAX(s.day) FROM AccountBalanceSnapshot s WHERE s.day < :day")
+    Optional<LocalDate> findLastDayBefore(LocalDate day);
+
+    // One day's snapshots from that day's legs only: the account's previous snapshot plus the day's net movement.
+    // Days must be snapshotted in order. Running a day again just overwrites it
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO account_balance_snapshots (account_id, day, closing_balance) " +
+            "SELECT d.account_id, :day, d.net + COALESCE((SELECT s.closing_balance FROM account_balance_snapshots s " +
+            "WHERE s.account_id = d.account_id AND s.day < :day ORDER BY s.day DESC LIMIT 1), 0) " +
+            "FROM (SELECT account_id, SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END) AS net " +
+            "FROM ledger_entries WHERE account_id IS NOT NULL AND posted_at >= :start AND posted_at < :end " +
+            "GROUP BY account_id) d " +
+            "ON DUPLICATE KEY UPDATE closing_balance = VALUES(closing_balance)",
+            nativeQuery = true)
+    int snapshotDay(LocalDate day, LocalDateTime start, LocalDateTime end);
+}
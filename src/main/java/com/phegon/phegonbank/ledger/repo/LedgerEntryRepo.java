@@ -0,0 +1,33 @@
+package com.phegon.phegonbank.ledger.repo;
+
+import com.phegon.phegonbank.ledger.entity.LedgerEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface LedgerEntryRepo extends JpaRepository<LedgerEntry, Long> {
+
+    @Query("SELECT e FROM LedgerEntry e LEFT JOIN FETCH e.account WHERE e.transaction.id = :transactionId ORDER BY e.id")
+    List<LedgerEntry> findByTransactionId(Long transactionId);
+
+    @Query(value = "SELECT e FROM LedgerEntry e JOIN FETCH e.account a WHERE a.accountNumber = :accountNumber " +
+            "ORDER BY e.postedAt DESC, e.id DESC",
+            countQuery = "SELECT COUNT(e) FROM LedgerEntry e WHERE e.account.accountNumber = :accountNumber")
+    Page<LedgerEntry> findByAccountNumber(String accountNumber, Pageable pageable);
+
+    // net movement over [from, before), served by the (account_id, posted_at) index
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.direction = com.phegon.phegonbank.enums.EntryDirection.CREDIT " +
+            "THEN e.amount ELSE -e.amount END), 0) " +
+            "FROM LedgerEntry e WHERE e.account.id = :accountId AND e.postedAt >= :from AND e.postedAt < :before")
+    BigDecimal netBetween(Long accountId, LocalDateTime from, LocalDateTime before);
+
+    @Query("SELECT MIN(e.postedAt) FROM LedgerEntry e")
+    Optional<LocalDateTime> findFirstPostedAt();
+
+}
@@ -0,0 +1,47 @@
+package com.phegon.phegonbank.ledger.services;
+
+
+import com.phegon.phegonbank.ledger.repo.AccountBalanceSnapshotRepo;
+import com.phegon.phegonbank.ledger.repo.LedgerEntryRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// End-of-day balance snapshots. Each run catches up from the last snapshotted day to yesterday, one day at a time
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceSnapshotJob {
+
+    private final AccountBalanceSnapshotRepo accountBalanceSnapshotRepo;
+    private final LedgerEntryRepo ledgerEntryRepo;
+
+
+    @Scheduled(cron = "${ledger.snapshot.cron:0 5 0 * * *}")
+    public void snapshot() {
+
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+
+        // quiet days leave no rows, so after one of those the days since the last active day are looked at again (cheap, idempotent)
+        LocalDate day = accountBalanceSnapshotRepo.findLastDay()
+                .map(last -> last.plusDays(1))
+                .orElseGet(() -> ledgerEntryRepo.findFirstPostedAt()
+                        .map(LocalDateTime::toLocalDate)
+                        .orElse(yesterday.plusDays(1)));
+
+        int days = 0;
+        int rows = 0;
+        for (; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            rows += accountBalanceSnapshotRepo.snapshotDay(day, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+            days++;
+        }
+
+        if (days > 0) {
+            log.info("Balance snapshots written for {} day(s), {} rows affected", days, rows);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.phegon.phegonbank.ledger.services;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * One-off migration that gives transactions posted before the ledger existed their legs. Only runs with
+ * ledger.backfill-on-startup=true, on one instance at a time, and walks transactions in id slices so no
+ * statement holds locks for long. It only fills gaps, so a run that died halfway can simply be started again.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "ledger.backfill-on-startup", havingValue = "true")
+public class LedgerBackfillRunner implements ApplicationRunner {
+
+    private static final String LOCK_NAME = "phegonbank.ledger_backfill";
+
+    // Transfers credit the account named in destination_account; deposits and withdrawals are balanced against
+    // the cash book (account_id NULL). Every part takes the slice bounds [?, ?)
+    private static final String BACKFILL_SLICE = "INSERT INTO ledger_entries (transaction_id, account_id, direction, amount, posted_at) " +
+            "SELECT t.id, t.account_id, CASE WHEN t.transaction_type = 'DEPOSIT' THEN 'CREDIT' ELSE 'DEBIT' END, " +
+            "t.amount, t.transaction_date FROM transactions t " +
+            "WHERE t.id >= ? AND t.id < ? AND t.status = 'SUCCESS' " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_entries e WHERE e.transaction_id = t.id) " +
+            "UNION ALL " +
+            "SELECT t.id, d.id, 'CREDIT', COALESCE(t.converted_amount, t.amount), t.transaction_date FROM transactions t " +
+            "JOIN accounts d ON d.account_number = t.destination_account " +
+            "WHERE t.id >= ? AND t.id < ? AND t.status = 'SUCCESS' AND t.transaction_type = 'TRANSFER' " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_entries e WHERE e.transaction_id = t.id) " +
+            "UNION ALL " +
+            "SELECT t.id, NULL, CASE WHEN t.transaction_type = 'DEPOSIT' THEN 'DEBIT' ELSE 'CREDIT' END, " +
+            "t.amount, t.transaction_date FROM transactions t " +
+            "WHERE t.id >= ? AND t.id < ? AND t.status = 'SUCCESS' AND t.transaction_type IN ('DEPOSIT', 'WITHDRAWAL') " +
+            "AND NOT EXISTS (SELECT 1 FROM ledger_entries e WHERE e.transaction_id = t.id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int sliceSize;
+
+    public LedgerBackfillRunner(JdbcTemplate jdbcTemplate,
+                                @Value("${ledger.backfill-slice-size:10000}") int sliceSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sliceSize = Math.max(1, sliceSize);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM transactions", Long.class);
+        if (maxId == null) {
+            return;
+        }
+
+        // one connection for the whole run, the named lock belongs to it
+        long inserted = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            if (!lock(con, "SELECT GET_LOCK(?, 0)")) {
+                log.info("Ledger backfill is already running on another instance, skipping");
+                return 0L;
+            }
+            boolean autoCommit = con.getAutoCommit();
+            int isolation = con.getTransactionIsolation();
+            try {
+                // each slice commits on its own, and under READ COMMITTED the INSERT ... SELECT reads transactions
+                // without the shared next-key locks REPEATABLE READ would hold on them
+                con.setAutoCommit(true);
+                con.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+                long total = 0;
+                try (PreparedStatement insert = con.prepareStatement(BACKFILL_SLICE)) {
+                    for (long from = 0; from <= maxId; from += sliceSize) {
+                        for (int part = 0; part < 3; part++) {
+                            insert.setLong(part * 2 + 1, from);
+                            insert.setLong(part * 2 + 2, from + sliceSize);
+                        }
+                        total += insert.executeUpdate();
+                    }
+                }
+                return total;
+            } finally {
+                con.setTransactionIsolation(isolation);
+                con.setAutoCommit(autoCommit);
+                lock(con, "SELECT RELEASE_LOCK(?)");
+            }
+        });
+
+        if (inserted > 0) {
+            log.info("Backfilled {} ledger entries for existing transactions", inserted);
+        }
+    }
+
+    private static boolean lock(Connection con, String sql) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.phegon.phegonbank.ledger.services;
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.ledger.dtos.LedgerEntryDTO;
+import com.phegon.phegonbank.ledger.entity.LedgerEntry;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Double-entry ledger kept alongside the balance column. Postings still update accounts.balance in place and write
+ * their legs here in the same transaction; the ledger is what history, point-in-time balances and statements read.
+ */
+public interface LedgerService {
+
+    List<LedgerEntry> legsFor(Transaction transaction, Account destination);
+
+    void insert(List<LedgerEntry> entries);
+
+    void record(Transaction transaction, Account destination);
+
+    BigDecimal balanceAt(Long accountId, LocalDateTime at);
+
+    // balance at `at` of every account with fromAccountId <= id < toAccountId that has any, by account id
+    Map<Long, BigDecimal> balancesAt(long fromAccountId, long toAccountId, LocalDateTime at);
+
+    Page<LedgerEntryDTO> findEntriesByAccountNumber(String accountNumber, int page, int size);
+
+    List<LedgerEntryDTO> findEntriesByTransactionId(Long transactionId);
+}
@@ -0,0 +1,159 @@
+package com.phegon.phegonbank.ledger.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.enums.EntryDirection;
+import com.phegon.phegonbank.ledger.dtos.LedgerEntryDTO;
+import com.phegon.phegonbank.ledger.entity.LedgerEntry;
+import com.phegon.phegonbank.ledger.repo.AccountBalanceSnapshotRepo;
+import com.phegon.phegonbank.ledger.repo.LedgerEntryRepo;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerServiceImpl implements LedgerService {
+
+    // insert-only, and IDENTITY keys keep Hibernate from batching, so legs go out as one JDBC batch
+    private static final String INSERT_ENTRY = "INSERT INTO ledger_entries " +
+            "(transaction_id, account_id, direction, amount, posted_at) VALUES (?, ?, ?, ?, ?)";
+
+    // latest snapshot before a day for each account in an id range
+    private static final String LATEST_SNAPSHOTS = "SELECT s.account_id, s.closing_balance FROM account_balance_snapshots s " +
+            "JOIN (SELECT account_id, MAX(day) AS day FROM account_balance_snapshots " +
+            "WHERE account_id >= ? AND account_id < ? AND day < ? GROUP BY account_id) m " +
+            "ON m.account_id = s.account_id AND m.day = s.day";
+
+    private static final String NET_SINCE = "SELECT account_id, SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END) " +
+            "FROM ledger_entries WHERE account_id >= ? AND account_id < ? AND posted_at >= ? AND posted_at < ? GROUP BY account_id";
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final LedgerEntryRepo ledgerEntryRepo;
+    private final AccountBalanceSnapshotRepo accountBalanceSnapshotRepo;
+    private final JdbcTemplate jdbcTemplate;
+
+
+    @Override
+    public List<LedgerEntry> legsFor(Transaction transaction, Account destination) {
+
+        Account account = transaction.getAccount();
+
+        return switch (transaction.getTransactionType()) {
+            case DEPOSIT -> List.of(
+                    leg(transaction, account, EntryDirection.CREDIT, transaction.getAmount()),
+                    leg(transaction, null, EntryDirection.DEBIT, transaction.getAmount()));
+            case WITHDRAWAL -> List.of(
+                    leg(transaction, account, EntryDirection.DEBIT, transaction.getAmount()),
+                    leg(transaction, null, EntryDirection.CREDIT, transaction.getAmount()));
+            // each leg is in its own account's currency, a cross-currency transfer balances at its exchange rate
+            case TRANSFER -> List.of(
+                    leg(transaction, account, EntryDirection.DEBIT, transaction.getAmount()),
+                    leg(transaction, destination, EntryDirection.CREDIT, transaction.creditedAmount()));
+        };
+    }
+
+    @Override
+    public void insert(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getTransaction().getId());
+            if (entry.getAccount() == null) {
+                ps.setNull(2, Types.BIGINT);
+            } else {
+                ps.setLong(2, entry.getAccount().getId());
+            }
+            ps.setString(3, entry.getDirection().name());
+            ps.setBigDecimal(4, entry.getAmount());
+            ps.setObject(5, entry.getPostedAt());
+        });
+    }
+
+    @Override
+    public void record(Transaction transaction, Account destination) {
+        insert(legsFor(transaction, destination));
+    }
+
+
+    @Override
+    public BigDecimal balanceAt(Long accountId, LocalDateTime at) {
+
+        // closing balance of the last full day before `at`, then only the legs after it. Snapshots are written every
+        // night, so the delta is at most a day or so of postings. No snapshot yet (new account) = sum from the start
+        return accountBalanceSnapshotRepo.findFirstByAccount_IdAndDayLessThanOrderByDayDesc(accountId, at.toLocalDate())
+                .map(snapshot -> snapshot.getClosingBalance().add(
+                        ledgerEntryRepo.netBetween(accountId, snapshot.getDay().plusDays(1).atStartOfDay(), at)))
+                .orElseGet(() -> ledgerEntryRepo.netBetween(accountId, BEGINNING, at));
+    }
+
+    @Override
+    public Map<Long, BigDecimal> balancesAt(long fromAccountId, long toAccountId, LocalDateTime at) {
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        jdbcTemplate.query(LATEST_SNAPSHOTS, (RowCallbackHandler) rs -> balances.put(rs.getLong(1), rs.getBigDecimal(2)),
+                fromAccountId, toAccountId, at.toLocalDate());
+
+        // Every account with postings on a snapshotted day has a snapshot for it, so past the last snapshotted day
+        // is the only place unsnapshotted legs can be, for all accounts at once
+        LocalDateTime since = accountBalanceSnapshotRepo.findLastDayBefore(at.toLocalDate())
+                .map(day -> day.plusDays(1).atStartOfDay())
+                .orElse(BEGINNING);
+
+        jdbcTemplate.query(NET_SINCE, (RowCallbackHandler) rs -> balances.merge(rs.getLong(1), rs.getBigDecimal(2), BigDecimal::add),
+                fromAccountId, toAccountId, since, at);
+
+        return balances;
+    }
+
+    @Override
+    public Page<LedgerEntryDTO> findEntriesByAccountNumber(String accountNumber, int page, int size) {
+        return ledgerEntryRepo.findByAccountNumber(accountNumber, PageRequest.of(page, size))
+                .map(this::toDTO);
+    }
+
+    @Override
+    public List<LedgerEntryDTO> findEntriesByTransactionId(Long transactionId) {
+        return ledgerEntryRepo.findByTransactionId(transactionId).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+
+    private LedgerEntry leg(Transaction transaction, Account account, EntryDirection direction, BigDecimal amount) {
+        return LedgerEntry.builder()
+                .transaction(transaction)
+                .account(account)
+                .direction(direction)
+                .amount(amount)
+                .postedAt(transaction.getTransactionDate())
+                .build();
+    }
+
+    private LedgerEntryDTO toDTO(LedgerEntry entry) {
+        return LedgerEntryDTO.builder()
+                .id(entry.getId())
+                .transactionId(entry.getTransaction().getId())
+                .accountNumber(entry.getAccount() == null ? null : entry.getAccount().getAccountNumber())
+                .direction(entry.getDirection())
+                .amount(entry.getAmount())
+                .postedAt(entry.getPostedAt())
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.phegon.phegonbank.money;
+
+
+import com.phegon.phegonbank.enums.Currency;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount as a long of minor units (cents, kobo) plus its currency. Used where amounts are summed row after row
+ * (statements, reconciliation) and for the balance arithmetic of postings, instead of a new BigDecimal per step.
+ * Stored through {@link MoneyConverter} and written to JSON as a plain number. A column or JSON field only holds
+ * the amount, so a Money read from one has no currency until {@link #withCurrency} gives it its account's.
+ */
+@JsonSerialize(using = MoneyJson.Serializer.class)
+@JsonDeserialize(using = MoneyJson.Deserializer.class)
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+
+    // every amount column is decimal(19,2)
+    public static final int SCALE = 2;
+
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    public static Money of(BigDecimal amount, Currency currency) {
+        if (!hasMinorUnitsOnly(amount)) {
+            throw new IllegalArgumentException("Amount " + amount + " has more than " + SCALE + " decimal places");
+        }
+        return new Money(amount.movePointRight(SCALE).longValueExact(), currency);
+    }
+
+    // false for e.g. 0.005, which a decimal(19,2) column would silently round
+    public static boolean hasMinorUnitsOnly(BigDecimal amount) {
+        return amount.scale() <= SCALE || amount.stripTrailingZeros().scale() <= SCALE;
+    }
+
+
+    public Money withCurrency(Currency currency) {
+        return currency == this.currency ? this : new Money(minorUnits, currency);
+    }
+
+
+    public Money plus(long minor) {
+        return new Money(Math.addExact(minorUnits, minor), currency);
+    }
+
+    public Money minus(long minor) {
+        return new Money(Math.subtractExact(minorUnits, minor), currency);
+    }
+
+    public Money plus(Money other) {
+        return plus(sameCurrency(other).minorUnits);
+    }
+
+    public Money minus(Money other) {
+        return minus(sameCurrency(other).minorUnits);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    // plain "1234.50" / "-0.05", written straight into the builder
+    public StringBuilder appendTo(StringBuilder out) {
+        long whole = minorUnits / 100;
+        int cents = (int) Math.abs(minorUnits % 100);
+        if (minorUnits < 0 && whole == 0) {
+            out.append('-');
+        }
+        out.append(whole).append('.');
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, sameCurrency(other).minorUnits);
+    }
+
+    private Money sameCurrency(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Cannot combine " + currency + " and " + other.currency);
+        }
+        return other;
+    }
+}
@@ -0,0 +1,47 @@
+package com.phegon.phegonbank.money;
+
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueDeserializer;
+import tools.jackson.databind.ValueSerializer;
+import tools.jackson.databind.exc.InvalidFormatException;
+
+import java.math.BigDecimal;
+
+/**
+ * Money in JSON is the plain amount, 1234.50, the same shape the BigDecimal fields it replaces had.
+ */
+public final class MoneyJson {
+
+    private MoneyJson() {
+    }
+
+    public static class Serializer extends ValueSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializationContext ctxt) {
+            gen.writeNumber(value.toBigDecimal());
+        }
+    }
+
+    // accepts 12.5 and "12.50", but not more than two decimal places
+    public static class Deserializer extends ValueDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) {
+            String text = p.getString();
+            try {
+                BigDecimal amount = p.currentToken() == JsonToken.VALUE_STRING
+                        ? new BigDecimal(text.trim())
+                        : p.getDecimalValue();
+                return Money.of(amount, null);
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw InvalidFormatException.from(p, "Not a valid amount", text, Money.class);
+            } catch (IllegalArgumentException e) {
+                throw InvalidFormatException.from(p, e.getMessage(), text, Money.class);
+            }
+        }
+    }
+}
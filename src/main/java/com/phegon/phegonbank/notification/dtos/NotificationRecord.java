@@ -0,0 +1,10 @@
+package com.phegon.phegonbank.notification.dtos;
+
+import com.phegon.phegonbank.enums.NotificationType;
+
+import java.time.LocalDateTime;
+
+// a row for the notifications table, waiting in the write-behind buffer (or its spill file)
+public record NotificationRecord(String subject, String recipient, String body, NotificationType type, Long userId,
+                                 LocalDateTime createdAt) {
+}
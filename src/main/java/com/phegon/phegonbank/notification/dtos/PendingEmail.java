@@ -0,0 +1,7 @@
+package com.phegon.phegonbank.notification.dtos;
+
+import com.phegon.phegonbank.auth_users.entity.User;
+
+// an email to send on behalf of a user, queued in the outbox until its transaction commits
+public record PendingEmail(NotificationDTO notification, User user) {
+}
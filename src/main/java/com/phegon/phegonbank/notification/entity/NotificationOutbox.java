@@ -0,0 +1,60 @@
+package com.phegon.phegonbank.notification.entity;
+
+
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "notification_outbox", indexes = @Index(name = "idx_outbox_status_next_attempt", columnList = "status, nextAttemptAt"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String recipient;
+    private String subject;
+    private String templateName;
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    // template variables as a JSON object of strings
+    @Column(columnDefinition = "TEXT")
+    private String templateVariables;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxStatus status;
+
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // set when a dispatcher takes the row as SENDING, a row stuck in SENDING past the timeout goes back to PENDING
+    private LocalDateTime claimedAt;
+
+    private LocalDateTime deliveredAt;
+}
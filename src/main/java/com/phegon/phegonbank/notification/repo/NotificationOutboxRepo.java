@@ -0,0 +1,31 @@
+package com.phegon.phegonbank.notification.repo;
+
+import com.phegon.phegonbank.notification.entity.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationOutboxRepo extends JpaRepository<NotificationOutbox, Long> {
+
+    // SKIP LOCKED lets several dispatchers (or instances) drain the outbox side by side without waiting on each other
+    @Query(value = "SELECT * FROM notification_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<NotificationOutbox> lockNextBatch(LocalDateTime now, int limit);
+
+    // rows whose dispatcher died between claiming and recording the outcome, they may go out twice
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationOutbox o SET o.status = com.phegon.phegonbank.enums.OutboxStatus.PENDING " +
+            "WHERE o.status = com.phegon.phegonbank.enums.OutboxStatus.SENDING AND o.claimedAt < :staleBefore")
+    int requeueStale(LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM notification_outbox WHERE status = 'DELIVERED' AND delivered_at < :before LIMIT :limit",
+            nativeQuery = true)
+    int deleteDeliveredBefore(LocalDateTime before, int limit);
+}
@@ -0,0 +1,196 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups outgoing emails so that many of them share one SMTP session. Messages wait up to linger-ms (or until
+ * batch-size of them are queued) and are then handed to JavaMailSender.send(MimeMessage...), which connects,
+ * runs STARTTLS and authenticates once for the whole batch, and reconnects if the server drops the session midway.
+ * Each message gets its own result: a message the server refused fails alone, the rest of the batch still counts
+ * as sent. The queue is bounded, senders block once it is full.
+ */
+@Component
+@Slf4j
+public class BatchingMailSender {
+
+    private final JavaMailSender mailSender;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Outgoing> queue;
+    private final Thread sender;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running = true;
+
+    private record Outgoing(MimeMessage message, CompletableFuture<Void> result) {
+    }
+
+    public BatchingMailSender(JavaMailSender mailSender, BackgroundExecutors backgroundExecutors, MeterRegistry meterRegistry,
+                              @Value("${notification.mail.batching:true}") boolean enabled,
+                              @Value("${notification.mail.batch-size:50}") int batchSize,
+                              @Value("${notification.mail.linger-ms:20}") long lingerMs,
+                              @Value("${notification.mail.queue-capacity:500}") int queueCapacity) {
+        this.mailSender = mailSender;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("notification.mail.batch-size").register(meterRegistry);
+
+        this.sender = backgroundExecutors.threadFactory("mail-batch").newThread(this::sendLoop);
+        if (enabled) {
+            sender.start();
+        }
+    }
+
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    // completes once the message was accepted by the server, or fails with the MailException for this message
+    public CompletableFuture<Void> send(MimeMessage message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        if (!enabled || !running) {
+            // no batching (or shutting down): send on the caller's thread
+            try {
+                mailSender.send(message);
+                result.complete(null);
+            } catch (MailException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        Outgoing outgoing = new Outgoing(message, result);
+        try {
+            queue.put(outgoing);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new MailSendException("Interrupted while queueing email", e));
+            return result;
+        }
+
+        // shutdown started while we were queueing: the sender may already have left its loop, so unless it took
+        // the message, send it from here
+        if (!running && queue.remove(outgoing)) {
+            try {
+                mailSender.send(message);
+                result.complete(null);
+            } catch (MailException e) {
+                result.completeExceptionally(e);
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // whatever is queued is still sent, new messages go out directly from here on
+        running = false;
+        sender.join(TimeUnit.SECONDS.toMillis(30));
+
+        // the sender gave up (or timed out), nobody is going to send what is left
+        List<Outgoing> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            failAll(left, new MailSendException("Mail sender shut down before the email was sent"));
+            log.warn("{} queued email(s) were not sent before shutdown", left.size());
+        }
+    }
+
+
+    private void sendLoop() {
+        List<Outgoing> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Outgoing first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // linger a little so a burst leaves in one session instead of one per message
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    Outgoing next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failAll(batch, new MailSendException("Mail sender interrupted", e));
+                return;
+            } catch (RuntimeException e) {
+                failAll(batch, e);
+                log.error("Unexpected error sending a mail batch", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Outgoing> batch) {
+        MimeMessage[] messages = new MimeMessage[batch.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = batch.get(i).message();
+        }
+        batchSizes.record(messages.length);
+
+        try {
+            mailSender.send(messages);
+            batch.forEach(outgoing -> outgoing.result().complete(null));
+        } catch (MailSendException e) {
+            // failedMessages holds the ones that didn't go out, keyed by the message we passed in
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                failAll(batch, e);
+                return;
+            }
+            for (Outgoing outgoing : batch) {
+                Exception cause = failed.get(outgoing.message());
+                if (cause == null) {
+                    outgoing.result().complete(null);
+                } else {
+                    outgoing.result().completeExceptionally(new MailSendException("Email could not be sent: " + cause.getMessage(), cause));
+                }
+            }
+            log.warn("{} of {} emails in a batch failed", failed.size(), batch.size());
+        } catch (MailException e) {
+            // connect or authentication failure, the next batch opens a new session
+            failAll(batch, e);
+            log.error("Mail batch of {} failed: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static void failAll(List<Outgoing> batch, RuntimeException e) {
+        for (Outgoing outgoing : batch) {
+            outgoing.result().completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders email templates from the engine's template cache. Every template under templates/ is parsed once at
+ * startup, so the first alerts of a burst don't pay for parsing. The parsed model keeps the static markup (head,
+ * styles, footer) as ready-made text, only the th: attributes are evaluated per render. Output goes to a per-thread
+ * buffer that is reused between renders on the mail worker threads. Render times are recorded per template in
+ * notification.template.render.
+ */
+@Component
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private static final String TEMPLATE_PATTERN = "classpath*:templates/*.html";
+    private static final int INITIAL_BUFFER = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final TemplateEngine templateEngine;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> renderTimers = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(() -> new StringWriter(INITIAL_BUFFER));
+
+    public EmailTemplateRenderer(TemplateEngine templateEngine, MeterRegistry meterRegistry) {
+        this.templateEngine = templateEngine;
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    public String render(String templateName, Map<String, Object> variables) {
+        Context context = new Context(Locale.getDefault(), variables == null ? Map.of() : variables);
+
+        StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        templateEngine.process(templateName, context, buffer);
+        sample.stop(renderTimer(templateName));
+
+        String html = buffer.toString();
+
+        // one oversized email shouldn't pin a large buffer to the thread for good
+        if (buffer.getBuffer().capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return html;
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        int loaded = 0;
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(TEMPLATE_PATTERN)) {
+                String fileName = resource.getFilename();
+                if (fileName != null) {
+                    preload(fileName.substring(0, fileName.length() - ".html".length()));
+                    loaded++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list email templates to preload: {}", e.getMessage());
+        }
+        log.info("Preloaded {} email templates", loaded);
+    }
+
+    // the template is parsed and cached before it is processed, so a render that fails without its variables still warms the cache
+    private void preload(String templateName) {
+        try {
+            templateEngine.process(templateName, new Context(), Writer.nullWriter());
+        } catch (TemplateProcessingException e) {
+            log.debug("Template {} needs its variables to render, parsed only: {}", templateName, e.getMessage());
+        }
+    }
+
+    private Timer renderTimer(String templateName) {
+        return renderTimers.computeIfAbsent(templateName, name -> Timer.builder("notification.template.render")
+                .tag("template", name)
+                .register(meterRegistry));
+    }
+}
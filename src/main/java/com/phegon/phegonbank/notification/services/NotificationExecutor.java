@@ -0,0 +1,136 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.enums.NotificationOverflow;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool emails are sent from. Its queue is bounded, so a slow SMTP server only ever costs queue-capacity
+ * emails worth of heap. Past that an email is written to notification_outbox (SPILL) for the outbox dispatcher
+ * to send, or sent on the caller's thread (CALLER_RUNS). On shutdown the queue gets drain-timeout-seconds to
+ * empty, and whatever is still in it is written to the outbox instead of being lost.
+ */
+@Component
+@Slf4j
+public class NotificationExecutor {
+
+    private final NotificationOutboxService notificationOutboxService;
+    private final NotificationOverflow overflow;
+    private final long drainTimeoutSeconds;
+    private final ThreadPoolExecutor pool;
+
+    private final Timer queueWait;
+    private final Timer sendTime;
+    private final Counter spilled;
+    private final Counter callerRuns;
+
+    // an email with the code that sends it, so a task that never ran can still be spilled
+    private final class EmailTask implements Runnable {
+        private final PendingEmail email;
+        private final Runnable send;
+        private final long queuedAt = System.nanoTime();
+
+        private EmailTask(PendingEmail email, Runnable send) {
+            this.email = email;
+            this.send = send;
+        }
+
+        @Override
+        public void run() {
+            queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            sendTime.record(send);
+        }
+    }
+
+    public NotificationExecutor(NotificationOutboxService notificationOutboxService,
+                                BackgroundExecutors backgroundExecutors, MeterRegistry meterRegistry,
+                                @Value("${notification.executor.workers:4}") int workers,
+                                @Value("${notification.executor.queue-capacity:1000}") int queueCapacity,
+                                @Value("${notification.executor.overflow:SPILL}") NotificationOverflow overflow,
+                                @Value("${notification.executor.drain-timeout-seconds:20}") long drainTimeoutSeconds) {
+        this.notificationOutboxService = notificationOutboxService;
+        this.overflow = overflow;
+        this.drainTimeoutSeconds = drainTimeoutSeconds;
+
+        this.queueWait = Timer.builder("notification.executor.queue-wait").register(meterRegistry);
+        this.sendTime = Timer.builder("notification.executor.send").register(meterRegistry);
+        this.spilled = Counter.builder("notification.executor.spilled").register(meterRegistry);
+        this.callerRuns = Counter.builder("notification.executor.caller-runs").register(meterRegistry);
+
+        RejectedExecutionHandler onFull = (task, executor) -> overflow((EmailTask) task, executor.isShutdown());
+        this.pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), backgroundExecutors.threadFactory("notification"), onFull);
+
+        Gauge.builder("notification.executor.queued", pool, p -> p.getQueue().size()).register(meterRegistry);
+        Gauge.builder("notification.executor.active", pool, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("notification.executor.capacity", pool, p -> p.getQueue().remainingCapacity()).register(meterRegistry);
+    }
+
+
+    public void submit(PendingEmail email, Runnable send) {
+        pool.execute(new EmailTask(email, send));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (pool.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // emails still queued go to the outbox, the next instance up sends them
+        List<PendingEmail> unsent = new ArrayList<>();
+        for (Runnable task : pool.shutdownNow()) {
+            unsent.add(((EmailTask) task).email);
+        }
+        if (!unsent.isEmpty()) {
+            spill(unsent);
+            log.info("Moved {} unsent emails to the outbox on shutdown", unsent.size());
+        }
+    }
+
+
+    private void overflow(EmailTask task, boolean shuttingDown) {
+        if (overflow == NotificationOverflow.SPILL || shuttingDown) {
+            try {
+                spill(List.of(task.email));
+                return;
+            } catch (RuntimeException e) {
+                if (shuttingDown) {
+                    log.error("Email to {} lost, the outbox could not be written: {}",
+                            task.email.notification().getRecipient(), e.getMessage());
+                    return;
+                }
+                // outbox unavailable, sending it ourselves is still better than dropping it
+                log.warn("Could not spill email to the outbox, sending it on the caller thread: {}", e.getMessage());
+            }
+        }
+        callerRuns.increment();
+        task.run();
+    }
+
+    private void spill(List<PendingEmail> emails) {
+        notificationOutboxService.enqueue(emails);
+        spilled.increment(emails.size());
+    }
+}
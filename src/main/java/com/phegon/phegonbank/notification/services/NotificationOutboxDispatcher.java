@@ -0,0 +1,221 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.enums.OutboxStatus;
+import com.phegon.phegonbank.notification.dtos.NotificationDTO;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+import com.phegon.phegonbank.notification.entity.NotificationOutbox;
+import com.phegon.phegonbank.notification.repo.NotificationOutboxRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains notification_outbox in the background. Each batch is claimed in a short transaction (SKIP LOCKED,
+ * then marked SENDING), sent with no transaction or row lock held, and the outcome recorded in a second short
+ * transaction, so two instances never send the same row and SMTP latency never holds a connection.
+ * Failed sends are retried with backoff and end up FAILED after max-attempts. The drain runs on its own thread,
+ * the scheduler only starts it, so an alert storm never holds up the other scheduled jobs.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxDispatcher {
+
+    private static final int CLEANUP_BATCH = 1000;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final NotificationOutboxRepo notificationOutboxRepo;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final BackgroundExecutors backgroundExecutors;
+
+    @Value("${notification.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${notification.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notification.outbox.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+
+    @Value("${notification.outbox.retention-hours:72}")
+    private long retentionHours;
+
+    @Value("${notification.outbox.sending-timeout-ms:300000}")
+    private long sendingTimeoutMs;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private ExecutorService sender;
+
+
+    // a claimed batch, rows that couldn't be turned into an email are already rescheduled
+    private record Claimed(int size, List<Long> ids, List<PendingEmail> emails) {
+    }
+
+
+    @PostConstruct
+    void startSender() {
+        sender = backgroundExecutors.newFixedPool("outbox", 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdown();
+    }
+
+
+    // a drain still going from the last poll just keeps going, no second one is queued behind it
+    @Scheduled(fixedDelayString = "${notification.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sender.execute(() -> {
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    log.error("Outbox dispatch failed", e);
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            draining.set(false);
+        }
+    }
+
+    private void drain() {
+        int requeued = notificationOutboxRepo.requeueStale(LocalDateTime.now().minusNanos(sendingTimeoutMs * 1_000_000));
+        if (requeued > 0) {
+            log.warn("Requeued {} outbox emails left in SENDING", requeued);
+        }
+
+        Claimed claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> claimBatch());
+            if (claimed == null || claimed.ids().isEmpty()) {
+                continue;
+            }
+            // the whole batch goes out together, sharing SMTP sessions
+            List<RuntimeException> errors = notificationService.deliverEmails(claimed.emails());
+            List<Long> ids = claimed.ids();
+            transactionTemplate.executeWithoutResult(status -> recordOutcome(ids, errors));
+        } while (claimed != null && claimed.size() == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.outbox.cleanup-interval-ms:3600000}")
+    public void purgeDelivered() {
+        LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+        int deleted;
+        int total = 0;
+        do {
+            deleted = notificationOutboxRepo.deleteDeliveredBefore(before, CLEANUP_BATCH);
+            total += deleted;
+        } while (deleted == CLEANUP_BATCH);
+
+        if (total > 0) {
+            log.info("Purged {} delivered outbox rows", total);
+        }
+    }
+
+
+    private Claimed claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationOutbox> batch = notificationOutboxRepo.lockNextBatch(now, batchSize);
+
+        List<Long> ids = new ArrayList<>(batch.size());
+        List<PendingEmail> emails = new ArrayList<>(batch.size());
+        for (NotificationOutbox row : batch) {
+            try {
+                emails.add(new PendingEmail(toDTO(row), row.getUser()));
+                row.setStatus(OutboxStatus.SENDING);
+                row.setClaimedAt(now);
+                ids.add(row.getId());
+            } catch (RuntimeException e) {
+                retryLater(row, e);
+            }
+        }
+        return new Claimed(batch.size(), ids, emails);
+    }
+
+    private void recordOutcome(List<Long> ids, List<RuntimeException> errors) {
+        Map<Long, NotificationOutbox> rows = new HashMap<>();
+        for (NotificationOutbox row : notificationOutboxRepo.findAllById(ids)) {
+            rows.put(row.getId(), row);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ids.size(); i++) {
+            NotificationOutbox row = rows.get(ids.get(i));
+            if (row == null) {
+                continue;
+            }
+            if (errors.get(i) == null) {
+                row.setStatus(OutboxStatus.DELIVERED);
+                row.setDeliveredAt(now);
+            } else {
+                row.setStatus(OutboxStatus.PENDING);
+                retryLater(row, errors.get(i));
+            }
+        }
+    }
+
+    private void retryLater(NotificationOutbox row, RuntimeException e) {
+        int attempts = row.getAttempts() + 1;
+        row.setAttempts(attempts);
+        row.setLastError(truncate(e.getMessage()));
+
+        if (attempts >= maxAttempts) {
+            row.setStatus(OutboxStatus.FAILED);
+            log.error("Giving up on outbox email {} to {} after {} attempts: {}", row.getId(), row.getRecipient(), attempts, e.getMessage());
+            return;
+        }
+
+        // 1x, 2x, 4x ... the base backoff
+        long delayMs = retryBackoffMs << Math.min(attempts - 1, 16);
+        row.setNextAttemptAt(LocalDateTime.now().plusNanos(delayMs * 1_000_000));
+        log.warn("Outbox email {} failed (attempt {}), retrying in {} ms: {}", row.getId(), attempts, delayMs, e.getMessage());
+    }
+
+    private NotificationDTO toDTO(NotificationOutbox row) {
+        Map<String, Object> variables = row.getTemplateVariables() == null ? null
+                : new HashMap<>(objectMapper.readValue(row.getTemplateVariables(), new TypeReference<Map<String, String>>() {
+        }));
+
+        return NotificationDTO.builder()
+                .recipient(row.getRecipient())
+                .subject(row.getSubject())
+                .templateName(row.getTemplateName())
+                .body(row.getBody())
+                .templateVariables(variables)
+                .build();
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
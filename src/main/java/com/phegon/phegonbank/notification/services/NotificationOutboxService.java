@@ -0,0 +1,11 @@
+package com.phegon.phegonbank.notification.services;
+
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+
+import java.util.List;
+
+public interface NotificationOutboxService {
+
+    // joins the caller's transaction, so the emails only exist if that transaction commits
+    void enqueue(List<PendingEmail> emails);
+}
@@ -0,0 +1,66 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import com.phegon.phegonbank.enums.OutboxStatus;
+import com.phegon.phegonbank.notification.dtos.NotificationDTO;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+public class NotificationOutboxServiceImpl implements NotificationOutboxService {
+
+    // IDENTITY keys again, a batch posting can enqueue hundreds of rows so they go out as one JDBC batch
+    private static final String INSERT_OUTBOX = "INSERT INTO notification_outbox " +
+            "(recipient, subject, template_name, body, template_variables, user_id, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+
+    @Override
+    public void enqueue(List<PendingEmail> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, emails, emails.size(), (ps, email) -> {
+            NotificationDTO notification = email.notification();
+            ps.setString(1, notification.getRecipient());
+            ps.setString(2, notification.getSubject());
+            ps.setString(3, notification.getTemplateName());
+            ps.setString(4, notification.getBody());
+            ps.setString(5, variablesJson(notification.getTemplateVariables()));
+            if (email.user() == null) {
+                ps.setNull(6, Types.BIGINT);
+            } else {
+                ps.setLong(6, email.user().getId());
+            }
+            ps.setString(7, OutboxStatus.PENDING.name());
+            ps.setObject(8, now);
+            ps.setObject(9, now);
+        });
+    }
+
+
+    // templates only print the values, so they are stored as their text (a BigDecimal keeps its scale this way)
+    private String variablesJson(Map<String, Object> variables) {
+        if (variables == null) {
+            return null;
+        }
+        Map<String, String> text = new HashMap<>();
+        variables.forEach((name, value) -> text.put(name, value == null ? null : value.toString()));
+        return objectMapper.writeValueAsString(text);
+    }
+}
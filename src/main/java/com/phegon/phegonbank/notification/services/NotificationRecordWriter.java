@@ -0,0 +1,309 @@
+package com.phegon.phegonbank.notification.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.notification.dtos.NotificationRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the notifications table. Sent emails are queued here and a single writer thread inserts
+ * them in JDBC batches of batch-size rows, or whatever arrived within flush-interval-ms. When the database can't be
+ * reached a batch is appended to spill-file (one JSON row per line) instead, and the file is replayed once the
+ * database is back, checked every spill-retry-ms and on startup. The queue is drained on shutdown.
+ */
+@Component
+@Slf4j
+public class NotificationRecordWriter {
+
+    // IDENTITY keys, so these only batch as plain JDBC (rewriteBatchedStatements makes it one multi-row INSERT)
+    private static final String INSERT_NOTIFICATION = "INSERT INTO notifications " +
+            "(subject, recipient, body, type, user_id, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long spillRetryMs;
+    private final Path spillFile;
+    private final BlockingQueue<NotificationRecord> queue;
+    private final Thread writer;
+
+    private final Counter written;
+    private final Counter spilled;
+    private final Counter dropped;
+
+    private volatile boolean running = true;
+    private long lastReplayAttempt;
+
+    public NotificationRecordWriter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                    BackgroundExecutors backgroundExecutors, MeterRegistry meterRegistry,
+                                    @Value("${notification.records.batch-size:200}") int batchSize,
+                                    @Value("${notification.records.flush-interval-ms:500}") long flushIntervalMs,
+                                    @Value("${notification.records.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${notification.records.spill-file:notification-spill.jsonl}") String spillFile,
+                                    @Value("${notification.records.spill-retry-ms:60000}") long spillRetryMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.spillRetryMs = spillRetryMs;
+        this.spillFile = Path.of(spillFile);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.written = Counter.builder("notification.records.written").register(meterRegistry);
+        this.spilled = Counter.builder("notification.records.spilled").register(meterRegistry);
+        this.dropped = Counter.builder("notification.records.dropped").register(meterRegistry);
+        Gauge.builder("notification.records.queued", queue, BlockingQueue::size).register(meterRegistry);
+
+        this.writer = backgroundExecutors.threadFactory("notification-records").newThread(this::writeLoop);
+        writer.start();
+    }
+
+
+    // blocks while the buffer is full, which only happens when the writer can't keep up at all
+    public void add(List<NotificationRecord> records) {
+        if (!running) {
+            flush(records); // shutting down, write them from here
+            return;
+        }
+        try {
+            for (NotificationRecord record : records) {
+                queue.put(record);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while buffering notification records");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+
+    private void writeLoop() {
+        List<NotificationRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                replaySpillIfDue();
+
+                NotificationRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    NotificationRecord next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                spill(batch);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error writing notification records", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<NotificationRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            write(records);
+        } catch (DataAccessException e) {
+            log.warn("Database unavailable, spilling {} notification records: {}", records.size(), e.getMessage());
+            spill(records);
+        }
+    }
+
+    // Only throws when the database is unavailable. A bad row fails the whole batch, so the batch is then
+    // written one by one and only that row is lost
+    private void write(List<NotificationRecord> records) {
+        try {
+            insert(records);
+        } catch (DataAccessException e) {
+            if (isUnavailable(e)) {
+                throw e;
+            }
+            for (NotificationRecord record : records) {
+                try {
+                    insert(List.of(record));
+                } catch (DataAccessException rowError) {
+                    if (isUnavailable(rowError)) {
+                        throw rowError;
+                    }
+                    dropped.increment();
+                    log.error("Dropping notification record to {}: {}", record.recipient(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void insert(List<NotificationRecord> records) {
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, records, records.size(), (ps, record) -> {
+            ps.setString(1, record.subject());
+            ps.setString(2, record.recipient());
+            ps.setString(3, record.body());
+            ps.setString(4, record.type() == null ? null : record.type().name());
+            if (record.userId() == null) {
+                ps.setNull(5, Types.BIGINT);
+            } else {
+                ps.setLong(5, record.userId());
+            }
+            ps.setObject(6, record.createdAt());
+        });
+        written.increment(records.size());
+    }
+
+    private static boolean isUnavailable(DataAccessException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+
+    private synchronized void spill(List<NotificationRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (NotificationRecord record : records) {
+                out.write(objectMapper.writeValueAsString(record));
+                out.newLine();
+            }
+            spilled.increment(records.size());
+        } catch (IOException e) {
+            dropped.increment(records.size());
+            log.error("Could not spill {} notification records to {}, they are lost: {}", records.size(), spillFile, e.getMessage());
+        }
+    }
+
+    private void replaySpillIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastReplayAttempt < spillRetryMs || !Files.exists(spillFile)) {
+            return;
+        }
+        lastReplayAttempt = now;
+        replaySpill();
+    }
+
+    // rows are written a batch at a time like flush(), a row the database refuses is dropped; if the database
+    // goes away again, only the rows not yet written are kept
+    private synchronized void replaySpill() {
+        long lines = 0;
+        long replayedLines = 0; // lines up to the last batch that made it in
+        long replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+            List<NotificationRecord> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lines++;
+                try {
+                    batch.add(objectMapper.readValue(line, NotificationRecord.class));
+                } catch (JacksonException e) {
+                    dropped.increment();
+                    log.error("Skipping unreadable line {} of {}: {}", lines, spillFile, e.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    replayed += batch.size();
+                    replayedLines = lines;
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                replayed += batch.size();
+            }
+        } catch (DataAccessException | IOException e) {
+            log.warn("Replaying {} stopped after {} records: {}", spillFile, replayed, e.getMessage());
+            keepUnreplayed(replayedLines);
+            return;
+        }
+
+        try {
+            Files.delete(spillFile);
+        } catch (IOException e) {
+            log.error("Could not delete replayed spill file {}: {}", spillFile, e.getMessage());
+            return;
+        }
+        log.info("Replayed {} spilled notification records", replayed);
+    }
+
+    private void keepUnreplayed(long replayed) {
+        if (replayed == 0) {
+            return;
+        }
+        Path remaining = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+        try (BufferedReader in = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(remaining, StandardCharsets.UTF_8)) {
+            long skipped = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (skipped < replayed) {
+                    skipped++;
+                    continue;
+                }
+                out.write(line);
+                out.newLine();
+            }
+        } catch (IOException e) {
+            log.error("Could not trim spill file {}, replayed records may be written twice: {}", spillFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(remaining, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not replace spill file {}: {}", spillFile, e.getMessage());
+        }
+    }
+}
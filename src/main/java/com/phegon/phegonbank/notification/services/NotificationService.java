@@ -2,7 +2,16 @@ package com.phegon.phegonbank.notification.services;
 
 import com.phegon.phegonbank.auth_users.entity.User;
 import com.phegon.phegonbank.notification.dtos.NotificationDTO;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+
+import java.util.List;
 
 public interface NotificationService {
     void sendEmail(NotificationDTO notificationDTO, User user);
+
+    // sends on the calling thread and throws when the mail can't be built or sent (used by the outbox dispatcher)
+    void deliverEmail(NotificationDTO notificationDTO, User user);
+
+    // sends a list together on the calling thread; one entry per email, null when it was sent
+    List<RuntimeException> deliverEmails(List<PendingEmail> emails);
 }
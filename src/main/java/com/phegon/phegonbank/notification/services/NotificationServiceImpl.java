@@ -4,36 +4,108 @@ package com.phegon.phegonbank.notification.services;
 import com.phegon.phegonbank.auth_users.entity.User;
 import com.phegon.phegonbank.enums.NotificationType;
 import com.phegon.phegonbank.notification.dtos.NotificationDTO;
-import com.phegon.phegonbank.notification.entity.Notification;
-import com.phegon.phegonbank.notification.repo.NotificationRepo;
+import com.phegon.phegonbank.notification.dtos.NotificationRecord;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
 
-    private final NotificationRepo notificationRepo;
-    private final JavaMailSender mailSender;
-    private final TemplateEngine templateEngine;
+    private final NotificationRecordWriter notificationRecordWriter;
+    private final BatchingMailSender batchingMailSender;
+    private final EmailTemplateRenderer emailTemplateRenderer;
+    private final NotificationExecutor notificationExecutor;
 
+    // upper bound on waiting for the batching sender, e.g. when it stops mid-shutdown
+    @Value("${notification.mail.send-timeout-ms:60000}")
+    private long sendTimeoutMs;
+
+    // queued on the notification pool, see NotificationExecutor for what happens when it is full
     @Override
-    @Async
     public void sendEmail(NotificationDTO notificationDTO, User user) {
+        notificationExecutor.submit(new PendingEmail(notificationDTO, user), () -> {
+            try {
+                deliverEmail(notificationDTO, user);
+            } catch (RuntimeException e) {
+                // template and rendering errors too, nothing above this task would log them
+                log.error("Could not send email to {}: {}", notificationDTO.getRecipient(), e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public void deliverEmail(NotificationDTO notificationDTO, User user) {
+        RuntimeException error = deliverEmails(List.of(new PendingEmail(notificationDTO, user))).get(0);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public List<RuntimeException> deliverEmails(List<PendingEmail> emails) {
+
+        // everything is queued before waiting on any of it, so the whole list can share SMTP sessions
+        List<CompletableFuture<Void>> sends = new ArrayList<>(emails.size());
+        for (PendingEmail email : emails) {
+            try {
+                sends.add(batchingMailSender.send(buildMessage(email.notification())));
+            } catch (RuntimeException e) {
+                sends.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        // one deadline for the whole list, not one per email
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        List<RuntimeException> errors = new ArrayList<>(emails.size());
+        List<NotificationRecord> sent = new ArrayList<>();
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                errors.add(null);
+                sent.add(toRecord(emails.get(i)));
+            } catch (ExecutionException e) {
+                errors.add(e.getCause() instanceof RuntimeException cause ? cause
+                        : new MailSendException("Email could not be sent", e.getCause()));
+            } catch (TimeoutException e) {
+                errors.add(new MailSendException("Email was not sent within " + sendTimeoutMs + " ms"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.add(new MailSendException("Interrupted while waiting for the email to be sent", e));
+            }
+        }
+
+        //save to our database table, batched in the background
+        if (!sent.isEmpty()) {
+            notificationRecordWriter.add(sent);
+            log.info("{} email(s) sent out", sent.size());
+        }
+        return errors;
+    }
+
+
+    private MimeMessage buildMessage(NotificationDTO notificationDTO) {
 
         try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            MimeMessage mimeMessage = batchingMailSender.createMimeMessage();
 
             MimeMessageHelper helper = new MimeMessageHelper(
                     mimeMessage,
@@ -47,42 +119,28 @@ public class NotificationServiceImpl implements NotificationService {
 
             // Use template if provided
             if (notificationDTO.getTemplateName() != null) {
-                Context context = new Context();
-                context.setVariables(notificationDTO.getTemplateVariables());
-                String htmlContent = templateEngine.process(notificationDTO.getTemplateName(), context);
+                String htmlContent = emailTemplateRenderer.render(notificationDTO.getTemplateName(), notificationDTO.getTemplateVariables());
                 helper.setText(htmlContent, true);
             } else {
 
                 // If No template send text body directly
                 helper.setText(notificationDTO.getBody(), true);
             }
-
-            mailSender.send(mimeMessage);
-            log.info("Email sent Out");
-
-            //save to our database table
-            Notification notificationToSave = Notification.builder()
-                    .recipient(notificationDTO.getRecipient())
-                    .subject(notificationDTO.getSubject())
-                    .body(notificationDTO.getBody())
-                    .type(NotificationType.EMAIL)
-                    .user(user)
-                    .build();
-
-            notificationRepo.save(notificationToSave);
-
+            return mimeMessage;
 
         } catch (MessagingException e) {
-            log.error(e.getMessage());
+            throw new MailPreparationException("Could not build email to " + notificationDTO.getRecipient(), e);
         }
     }
-}
-
-
-
-
-
-
-
-
 
+    private NotificationRecord toRecord(PendingEmail email) {
+        NotificationDTO notificationDTO = email.notification();
+        return new NotificationRecord(
+                notificationDTO.getSubject(),
+                notificationDTO.getRecipient(),
+                notificationDTO.getBody(),
+                NotificationType.EMAIL,
+                email.user() == null ? null : email.user().getId(),
+                LocalDateTime.now());
+    }
+}
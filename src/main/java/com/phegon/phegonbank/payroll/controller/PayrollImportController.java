@@ -0,0 +1,48 @@
+package com.phegon.phegonbank.payroll.controller;
+
+
+import com.phegon.phegonbank.payroll.services.PayrollImportService;
+import com.phegon.phegonbank.res.Response;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping("/api/payroll/imports")
+@RequiredArgsConstructor
+public class PayrollImportController {
+
+    private final PayrollImportService payrollImportService;
+
+    // CSV lines of destinationAccountNumber,amount[,description], an optional header line is skipped
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Response<?>> uploadPayroll(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam String sourceAccountNumber
+    ) {
+        Response<?> response = payrollImportService.uploadPayroll(file, sourceAccountNumber);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @GetMapping
+    public ResponseEntity<Response<?>> getMyImports() {
+        return ResponseEntity.ok(payrollImportService.getMyImports());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Response<?>> getImport(@PathVariable Long id) {
+        return ResponseEntity.ok(payrollImportService.getImport(id));
+    }
+
+    @GetMapping("/{id}/report")
+    public ResponseEntity<Resource> getReport(@PathVariable Long id) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payroll-" + id + "-report.csv\"")
+                .body(payrollImportService.getReport(id));
+    }
+}
@@ -0,0 +1,50 @@
+package com.phegon.phegonbank.payroll.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.JobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayrollImportDTO {
+
+    private Long id;
+
+    private String sourceAccount;
+
+    private String fileName;
+
+    private JobStatus status;
+
+    private int totalLines;
+
+    private int invalidLines;
+
+    private int postedLines;
+
+    private int failedLines;
+
+    private int heldLines;
+
+    private BigDecimal totalAmount;
+
+    private String message;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
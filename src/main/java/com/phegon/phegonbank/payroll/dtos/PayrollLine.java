@@ -0,0 +1,15 @@
+package com.phegon.phegonbank.payroll.dtos;
+
+import java.math.BigDecimal;
+
+// one line of a payroll file. error is set when the line can't be paid, the other fields may then be null
+public record PayrollLine(int lineNumber, String destinationAccount, BigDecimal amount, String description, String error) {
+
+    public boolean valid() {
+        return error == null;
+    }
+
+    public PayrollLine withError(String message) {
+        return new PayrollLine(lineNumber, destinationAccount, amount, description, message);
+    }
+}
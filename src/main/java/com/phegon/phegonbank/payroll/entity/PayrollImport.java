@@ -0,0 +1,59 @@
+package com.phegon.phegonbank.payroll.entity;
+
+
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One uploaded payroll file paying out of sourceAccount. Line counts are updated as chunks are posted
+@Entity
+@Data
+@Builder
+@Table(name = "payroll_imports", indexes = @Index(name = "idx_payroll_imports_user", columnList = "user_id"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class PayrollImport {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private String sourceAccount;
+
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    private int totalLines;
+    private int invalidLines;
+    private int postedLines;
+    private int failedLines;
+    private int heldLines; // held by the velocity rules, waiting in the review queue
+
+    // sum of the valid lines, checked against the source balance before anything is posted
+    @Column(precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(length = 500)
+    private String message;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,15 @@
+package com.phegon.phegonbank.payroll.repo;
+
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.payroll.entity.PayrollImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PayrollImportRepo extends JpaRepository<PayrollImport, Long> {
+
+    List<PayrollImport> findByUserIdOrderByIdDesc(Long userId);
+
+    List<PayrollImport> findByStatusIn(Collection<JobStatus> statuses);
+}
@@ -0,0 +1,122 @@
+package com.phegon.phegonbank.payroll.services;
+
+
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.payroll.dtos.PayrollLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a payroll CSV one line at a time: destinationAccountNumber,amount[,description]. A header line is
+ * skipped. Fields may be double quoted, but a field can't span lines. Only the format is checked here,
+ * whether the destination accounts exist is up to the caller.
+ */
+final class PayrollFileReader {
+
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+
+    private PayrollFileReader() {
+    }
+
+    static void read(Path file, String sourceAccount, Consumer<PayrollLine> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String text;
+            int lineNumber = 0;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (text.isBlank() || (lineNumber == 1 && isHeader(text))) {
+                    continue;
+                }
+                consumer.accept(parse(lineNumber, text, sourceAccount));
+            }
+        }
+    }
+
+
+    private static PayrollLine parse(int lineNumber, String text, String sourceAccount) {
+
+        List<String> fields = fields(text);
+        if (fields.size() < 2 || fields.size() > 3) {
+            return new PayrollLine(lineNumber, null, null, null, "Expected destinationAccountNumber,amount[,description]");
+        }
+
+        String destination = fields.get(0).trim();
+        String description = fields.size() == 3 ? fields.get(2).trim() : null;
+        if (description != null && description.length() > MAX_DESCRIPTION_LENGTH) {
+            description = description.substring(0, MAX_DESCRIPTION_LENGTH);
+        }
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(fields.get(1).trim());
+        } catch (NumberFormatException e) {
+            return new PayrollLine(lineNumber, destination, null, description, "Amount is not a number");
+        }
+
+        PayrollLine line = new PayrollLine(lineNumber, destination, amount, description, null);
+        if (destination.isEmpty()) {
+            return line.withError("Destination account is required");
+        }
+        if (destination.equals(sourceAccount)) {
+            return line.withError("Destination cannot be the source account");
+        }
+        if (amount.signum() <= 0) {
+            return line.withError("Amount must be greater than zero");
+        }
+        if (!Money.hasMinorUnitsOnly(amount)) {
+            return line.withError("Amount cannot have more than " + Money.SCALE + " decimal places");
+        }
+        return line;
+    }
+
+    // a first line whose amount column isn't a number, e.g. "account,amount,description"
+    private static boolean isHeader(String text) {
+        List<String> fields = fields(text);
+        if (fields.size() < 2) {
+            return false;
+        }
+        try {
+            new BigDecimal(fields.get(1).trim());
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static List<String> fields(String text) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
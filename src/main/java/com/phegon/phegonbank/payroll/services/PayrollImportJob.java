@@ -0,0 +1,311 @@
+package com.phegon.phegonbank.payroll.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.csv.Csv;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.BatchMode;
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.payroll.dtos.PayrollLine;
+import com.phegon.phegonbank.payroll.entity.PayrollImport;
+import com.phegon.phegonbank.payroll.repo.PayrollImportRepo;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchItemResult;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchRequest;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.services.TransactionBatchService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Works through an uploaded payroll file in two streaming passes, so only a chunk of lines is in memory at a time.
+ * The first pass checks every line and its destination account (one IN (...) lookup per chunk) and adds up the
+ * total, which is checked against the source balance once. The second pass posts the good lines a chunk at a time
+ * through the batch posting and writes each line's outcome to the report.
+ */
+@Component
+@Slf4j
+public class PayrollImportJob {
+
+    private static final String REPORT_HEADER = "line,destinationAccount,amount,status,transactionId,message";
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    private final PayrollImportRepo payrollImportRepo;
+    private final AccountRepo accountRepo;
+    private final HotAccountService hotAccountService;
+    private final TransactionBatchService transactionBatchService;
+
+    private final Path workDir;
+    private final int chunkSize;
+    private final int maxLines;
+    private final int maxInvalidLines;
+    private final ExecutorService workerPool;
+
+    // the file is rejected as a whole, nothing has been posted yet
+    private static class PayrollRejectedException extends RuntimeException {
+        PayrollRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    public PayrollImportJob(PayrollImportRepo payrollImportRepo, AccountRepo accountRepo,
+                            HotAccountService hotAccountService, TransactionBatchService transactionBatchService,
+                            BackgroundExecutors backgroundExecutors,
+                            @Value("${payroll.work-dir:payroll}") String workDir,
+                            @Value("${payroll.chunk-size:500}") int chunkSize,
+                            @Value("${payroll.max-lines:100000}") int maxLines,
+                            @Value("${payroll.max-invalid-lines:1000}") int maxInvalidLines,
+                            @Value("${payroll.workers:1}") int workers) {
+        this.payrollImportRepo = payrollImportRepo;
+        this.accountRepo = accountRepo;
+        this.hotAccountService = hotAccountService;
+        this.transactionBatchService = transactionBatchService;
+        this.workDir = Path.of(workDir);
+        this.chunkSize = chunkSize;
+        this.maxLines = maxLines;
+        this.maxInvalidLines = maxInvalidLines;
+
+        this.workerPool = backgroundExecutors.newFixedPool("payroll", workers);
+    }
+
+
+    public Path uploadPath(Long importId) {
+        return workDir.resolve(importId + ".csv");
+    }
+
+    public Path reportPath(Long importId) {
+        return workDir.resolve(importId + "-report.csv");
+    }
+
+    public void submit(Long importId) {
+        workerPool.execute(() -> run(importId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+
+    private void run(Long importId) {
+
+        PayrollImport payroll = payrollImportRepo.findById(importId).orElse(null);
+        if (payroll == null || payroll.getStatus() != JobStatus.PENDING) {
+            return;
+        }
+        payroll.setStatus(JobStatus.RUNNING);
+        payroll.setStartedAt(LocalDateTime.now());
+        payroll = payrollImportRepo.save(payroll);
+
+        try {
+            process(payroll);
+            payroll.setStatus(JobStatus.COMPLETED);
+            log.info("Payroll import {} done: {} posted, {} held, {} failed, {} invalid", importId,
+                    payroll.getPostedLines(), payroll.getHeldLines(), payroll.getFailedLines(), payroll.getInvalidLines());
+        } catch (PayrollRejectedException e) {
+            payroll.setStatus(JobStatus.FAILED);
+            payroll.setMessage(truncate(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Payroll import {} failed", importId, e);
+            payroll.setStatus(JobStatus.FAILED);
+            payroll.setMessage(truncate("Stopped after " + payroll.getPostedLines() + " posted lines: " + e.getMessage()));
+        } finally {
+            payroll.setFinishedAt(LocalDateTime.now());
+            payrollImportRepo.save(payroll);
+            deleteQuietly(uploadPath(importId));
+        }
+    }
+
+    private void process(PayrollImport payroll) throws IOException {
+
+        Path upload = uploadPath(payroll.getId());
+        Account source = accountRepo.findByAccountNumber(payroll.getSourceAccount())
+                .orElseThrow(() -> new PayrollRejectedException("Source account not found"));
+        if (source.getStatus() != AccountStatus.ACTIVE) {
+            throw new PayrollRejectedException("Source account is not active");
+        }
+
+        // pass 1: line number -> why it can't be paid, plus the total of the rest
+        Map<Integer, String> errors = new HashMap<>();
+        long[] counts = new long[2]; // lines, total in minor units
+        List<PayrollLine> chunk = new ArrayList<>(chunkSize);
+
+        PayrollFileReader.read(upload, source.getAccountNumber(), line -> {
+            if (++counts[0] > maxLines) {
+                throw new PayrollRejectedException("A payroll file can hold at most " + maxLines + " lines");
+            }
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                counts[1] += checkDestinations(chunk, errors, source);
+                chunk.clear();
+            }
+        });
+        counts[1] += checkDestinations(chunk, errors, source);
+
+        BigDecimal total = new Money(counts[1], source.getCurrency()).toBigDecimal();
+        payroll.setTotalLines((int) counts[0]);
+        payroll.setInvalidLines(errors.size());
+        payroll.setTotalAmount(total);
+        payrollImportRepo.save(payroll);
+
+        BigDecimal available = hotAccountService.totalBalance(source);
+        if (available.compareTo(total) < 0) {
+            throw new PayrollRejectedException("Insufficient balance for this payroll: it needs " + total
+                    + " and the account has " + available + ". Nothing was posted");
+        }
+
+        // pass 2: post the good lines chunk by chunk, reporting every line in file order
+        try (BufferedWriter report = Files.newBufferedWriter(reportPath(payroll.getId()), StandardCharsets.UTF_8)) {
+            report.write(REPORT_HEADER);
+            report.newLine();
+
+            List<PayrollLine> pending = new ArrayList<>(chunkSize);
+            PayrollFileReader.read(upload, source.getAccountNumber(), line -> {
+                String error = errors.get(line.lineNumber());
+                pending.add(error != null && line.valid() ? line.withError(error) : line);
+                if (pending.size() == chunkSize) {
+                    post(payroll, pending, report);
+                    pending.clear();
+                }
+            });
+            post(payroll, pending, report);
+        }
+    }
+
+    // one IN (...) query for the chunk's destinations; returns the chunk's payable total in minor units
+    private long checkDestinations(List<PayrollLine> chunk, Map<Integer, String> errors, Account source) {
+
+        Set<String> destinations = new HashSet<>();
+        for (PayrollLine line : chunk) {
+            if (line.valid()) {
+                destinations.add(line.destinationAccount());
+            }
+        }
+        Set<String> active = destinations.isEmpty() ? Set.of() : new HashSet<>(accountRepo.findActiveAccountNumbers(destinations));
+
+        long total = 0;
+        for (PayrollLine line : chunk) {
+            if (!line.valid()) {
+                errors.put(line.lineNumber(), line.error());
+            } else if (!active.contains(line.destinationAccount())) {
+                errors.put(line.lineNumber(), "Destination account not found or not active");
+            } else {
+                total = Math.addExact(total, Money.of(line.amount(), source.getCurrency()).minorUnits());
+            }
+        }
+
+        if (errors.size() > maxInvalidLines) {
+            throw new PayrollRejectedException("More than " + maxInvalidLines + " invalid lines, nothing was posted. " +
+                    "Fix the file and upload it again");
+        }
+        return total;
+    }
+
+    private void post(PayrollImport payroll, List<PayrollLine> lines, BufferedWriter report) {
+
+        List<TransactionRequest> requests = new ArrayList<>(lines.size());
+        for (PayrollLine line : lines) {
+            if (line.valid()) {
+                requests.add(toRequest(payroll, line));
+            }
+        }
+
+        List<TransactionBatchItemResult> results = List.of();
+        if (!requests.isEmpty()) {
+            TransactionBatchRequest batch = new TransactionBatchRequest();
+            batch.setMode(BatchMode.BEST_EFFORT);
+            batch.setTransactions(requests);
+            results = transactionBatchService.createTransactions(batch).getData();
+        }
+
+        int next = 0;
+        int posted = 0;
+        int failed = 0;
+        int held = 0;
+        try {
+            for (PayrollLine line : lines) {
+                if (!line.valid()) {
+                    writeRow(report, line, TransactionStatus.FAILED, null, line.error());
+                    continue;
+                }
+                TransactionBatchItemResult result = results.get(next++);
+                writeRow(report, line, result.getStatus(), result.getTransactionId(), result.getMessage());
+                if (result.getStatus() == TransactionStatus.SUCCESS) {
+                    posted++;
+                } else if (result.getStatus() == TransactionStatus.PENDING) {
+                    held++;
+                } else {
+                    failed++;
+                }
+            }
+            report.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        payroll.setPostedLines(payroll.getPostedLines() + posted);
+        payroll.setFailedLines(payroll.getFailedLines() + failed);
+        payroll.setHeldLines(payroll.getHeldLines() + held);
+        payrollImportRepo.save(payroll);
+    }
+
+    // the reference in the description ties every posting back to its file and line
+    private TransactionRequest toRequest(PayrollImport payroll, PayrollLine line) {
+        String reference = "Payroll #" + payroll.getId() + " line " + line.lineNumber();
+
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(TransactionType.TRANSFER);
+        request.setAccountNumber(payroll.getSourceAccount());
+        request.setDestinationAccountNumber(line.destinationAccount());
+        request.setAmount(line.amount());
+        request.setDescription(line.description() == null || line.description().isEmpty()
+                ? reference : reference + ": " + line.description());
+        return request;
+    }
+
+    private void writeRow(BufferedWriter report, PayrollLine line, TransactionStatus status, Long transactionId,
+                          String message) throws IOException {
+        report.write(line.lineNumber() + "," + Csv.value(line.destinationAccount()) + ","
+                + (line.amount() == null ? "" : line.amount().toPlainString()) + "," + status + ","
+                + (transactionId == null ? "" : transactionId) + "," + Csv.value(message));
+        report.newLine();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,15 @@
+package com.phegon.phegonbank.payroll.services;
+
+import com.phegon.phegonbank.payroll.dtos.PayrollImportDTO;
+import com.phegon.phegonbank.res.Response;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+public interface PayrollImportService {
+    Response<PayrollImportDTO> uploadPayroll(MultipartFile file, String sourceAccountNumber);
+    Response<List<PayrollImportDTO>> getMyImports();
+    Response<PayrollImportDTO> getImport(Long id);
+    Resource getReport(Long id);
+}
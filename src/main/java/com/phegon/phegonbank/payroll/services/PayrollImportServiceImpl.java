@@ -0,0 +1,187 @@
+package com.phegon.phegonbank.payroll.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.auth_users.services.UserService;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.payroll.dtos.PayrollImportDTO;
+import com.phegon.phegonbank.payroll.entity.PayrollImport;
+import com.phegon.phegonbank.payroll.repo.PayrollImportRepo;
+import com.phegon.phegonbank.res.Response;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Payroll uploads. The file is copied to the work dir as it arrives and the import is queued; the actual
+ * checking and posting happen in PayrollImportJob, so the request returns as soon as the upload is stored.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PayrollImportServiceImpl implements PayrollImportService {
+
+    private final PayrollImportRepo payrollImportRepo;
+    private final PayrollImportJob payrollImportJob;
+    private final AccountRepo accountRepo;
+    private final UserService userService;
+
+
+    @Override
+    public Response<PayrollImportDTO> uploadPayroll(MultipartFile file, String sourceAccountNumber) {
+
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("Payroll file is empty");
+        }
+
+        User user = userService.getCurrentLoggedInUser();
+
+        Account source = accountRepo.findByAccountNumber(sourceAccountNumber)
+                .orElseThrow(() -> new NotFoundException("Account not found"));
+        if (!source.getUser().getId().equals(user.getId())) {
+            throw new BadRequestException("Account does not belong to the authenticated user");
+        }
+        if (source.getStatus() != AccountStatus.ACTIVE) {
+            throw new BadRequestException("Account " + source.getAccountNumber() + " is not active");
+        }
+
+        PayrollImport payroll = payrollImportRepo.save(PayrollImport.builder()
+                .user(user)
+                .sourceAccount(source.getAccountNumber())
+                .fileName(file.getOriginalFilename())
+                .status(JobStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        // copied as a stream, the upload is never held in memory as a whole
+        Path upload = payrollImportJob.uploadPath(payroll.getId());
+        try (InputStream in = file.getInputStream()) {
+            Files.createDirectories(upload.getParent());
+            Files.copy(in, upload, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not store payroll upload {}", payroll.getId(), e);
+            payroll.setStatus(JobStatus.FAILED);
+            payroll.setMessage("Upload could not be stored");
+            payroll.setFinishedAt(LocalDateTime.now());
+            payrollImportRepo.save(payroll);
+            throw new BadRequestException("Payroll file could not be stored, please try again");
+        }
+
+        payrollImportJob.submit(payroll.getId());
+
+        return Response.<PayrollImportDTO>builder()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .message("Payroll import queued")
+                .data(toDTO(payroll))
+                .build();
+    }
+
+    @Override
+    public Response<List<PayrollImportDTO>> getMyImports() {
+
+        User user = userService.getCurrentLoggedInUser();
+
+        List<PayrollImportDTO> imports = payrollImportRepo.findByUserIdOrderByIdDesc(user.getId()).stream()
+                .map(this::toDTO)
+                .toList();
+
+        return Response.<List<PayrollImportDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Payroll imports retrieved")
+                .data(imports)
+                .build();
+    }
+
+    @Override
+    public Response<PayrollImportDTO> getImport(Long id) {
+        return Response.<PayrollImportDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Payroll import retrieved")
+                .data(toDTO(myImport(id)))
+                .build();
+    }
+
+    @Override
+    public Resource getReport(Long id) {
+
+        PayrollImport payroll = myImport(id);
+
+        Path report = payrollImportJob.reportPath(payroll.getId());
+        if (!Files.exists(report)) {
+            throw new NotFoundException("No report for this payroll import");
+        }
+        return new FileSystemResource(report);
+    }
+
+
+    // Only imports whose upload is on this instance can be picked up again. A RUNNING one may have posted part of
+    // its lines, and running it again would pay those twice, so it is failed and left to the owner to check
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingImports() {
+        for (PayrollImport payroll : payrollImportRepo.findByStatusIn(List.of(JobStatus.PENDING, JobStatus.RUNNING))) {
+            if (!Files.exists(payrollImportJob.uploadPath(payroll.getId()))) {
+                continue;
+            }
+            if (payroll.getStatus() == JobStatus.PENDING) {
+                log.info("Resuming payroll import {}", payroll.getId());
+                payrollImportJob.submit(payroll.getId());
+            } else {
+                payroll.setStatus(JobStatus.FAILED);
+                payroll.setMessage("Interrupted after " + payroll.getPostedLines() + " posted lines. Check the report " +
+                        "and transactions described 'Payroll #" + payroll.getId() + "' before uploading the rest again");
+                payroll.setFinishedAt(LocalDateTime.now());
+                payrollImportRepo.save(payroll);
+                log.warn("Payroll import {} was interrupted and marked failed", payroll.getId());
+            }
+        }
+    }
+
+
+    private PayrollImport myImport(Long id) {
+        User user = userService.getCurrentLoggedInUser();
+        PayrollImport payroll = payrollImportRepo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Payroll import not found"));
+        if (!payroll.getUser().getId().equals(user.getId())) {
+            throw new NotFoundException("Payroll import not found");
+        }
+        return payroll;
+    }
+
+    private PayrollImportDTO toDTO(PayrollImport payroll) {
+        return PayrollImportDTO.builder()
+                .id(payroll.getId())
+                .sourceAccount(payroll.getSourceAccount())
+                .fileName(payroll.getFileName())
+                .status(payroll.getStatus())
+                .totalLines(payroll.getTotalLines())
+                .invalidLines(payroll.getInvalidLines())
+                .postedLines(payroll.getPostedLines())
+                .failedLines(payroll.getFailedLines())
+                .heldLines(payroll.getHeldLines())
+                .totalAmount(payroll.getTotalAmount())
+                .message(payroll.getMessage())
+                .createdAt(payroll.getCreatedAt())
+                .startedAt(payroll.getStartedAt())
+                .finishedAt(payroll.getFinishedAt())
+                .build();
+    }
+}
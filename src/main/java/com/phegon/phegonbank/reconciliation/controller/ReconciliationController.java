@@ -0,0 +1,39 @@
+package com.phegon.phegonbank.reconciliation.controller;
+
+
+import com.phegon.phegonbank.reconciliation.services.ReconciliationService;
+import com.phegon.phegonbank.res.Response;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/audit/reconciliation")
+@RequiredArgsConstructor
+@PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    @PostMapping
+    public ResponseEntity<Response<?>> startRun() {
+        Response<?> response = reconciliationService.startRun();
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    // latest run's summary
+    @GetMapping
+    public ResponseEntity<Response<?>> getLatestRun() {
+        return ResponseEntity.ok(reconciliationService.getLatestRun());
+    }
+
+    @GetMapping("/{runId}/mismatches")
+    public ResponseEntity<Response<?>> getMismatches(
+            @PathVariable Long runId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(reconciliationService.getMismatches(runId, page, size));
+    }
+}
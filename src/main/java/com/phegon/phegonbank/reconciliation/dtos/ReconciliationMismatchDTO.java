@@ -0,0 +1,29 @@
+package com.phegon.phegonbank.reconciliation.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.money.Money;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationMismatchDTO {
+
+    private Long accountId;
+
+    private String accountNumber;
+
+    private Money recordedBalance;
+
+    private Money expectedBalance;
+
+    private Money difference;
+}
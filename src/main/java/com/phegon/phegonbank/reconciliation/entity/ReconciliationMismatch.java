@@ -0,0 +1,46 @@
+package com.phegon.phegonbank.reconciliation.entity;
+
+
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.money.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// an account whose stored balance (row + hot slots) differs from what its transactions add up to
+@Entity
+@Data
+@Builder
+@Table(name = "reconciliation_mismatches", indexes = @Index(name = "idx_reconciliation_mismatches_run", columnList = "run_id"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReconciliationMismatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private ReconciliationRun run;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    private String accountNumber;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money recordedBalance;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money expectedBalance;
+
+    // recorded - expected
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money difference;
+}
@@ -0,0 +1,11 @@
+package com.phegon.phegonbank.reconciliation.repo;
+
+import com.phegon.phegonbank.reconciliation.entity.ReconciliationMismatch;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ReconciliationMismatchRepo extends JpaRepository<ReconciliationMismatch, Long> {
+
+    Page<ReconciliationMismatch> findByRunIdOrderByAccountId(Long runId, Pageable pageable);
+}
@@ -0,0 +1,11 @@
+package com.phegon.phegonbank.reconciliation.repo;
+
+import com.phegon.phegonbank.reconciliation.entity.ReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ReconciliationRunRepo extends JpaRepository<ReconciliationRun, Long> {
+
+    Optional<ReconciliationRun> findFirstByOrderByIdDesc();
+}
@@ -0,0 +1,13 @@
+package com.phegon.phegonbank.reconciliation.services;
+
+import com.phegon.phegonbank.reconciliation.dtos.ReconciliationMismatchDTO;
+import com.phegon.phegonbank.reconciliation.dtos.ReconciliationRunDTO;
+import com.phegon.phegonbank.res.Response;
+
+import java.util.List;
+
+public interface ReconciliationService {
+    Response<ReconciliationRunDTO> startRun();
+    Response<ReconciliationRunDTO> getLatestRun();
+    Response<List<ReconciliationMismatchDTO>> getMismatches(Long runId, int page, int size);
+}
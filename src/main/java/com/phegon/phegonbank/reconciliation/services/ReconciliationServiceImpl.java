@@ -0,0 +1,321 @@
+package com.phegon.phegonbank.reconciliation.services;
+
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.reconciliation.dtos.ReconciliationMismatchDTO;
+import com.phegon.phegonbank.reconciliation.dtos.ReconciliationRunDTO;
+import com.phegon.phegonbank.reconciliation.entity.ReconciliationMismatch;
+import com.phegon.phegonbank.reconciliation.entity.ReconciliationRun;
+import com.phegon.phegonbank.reconciliation.repo.ReconciliationMismatchRepo;
+import com.phegon.phegonbank.reconciliation.repo.ReconciliationRunRepo;
+import com.phegon.phegonbank.res.Response;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recomputes every account's balance from its transactions and records the accounts that don't match.
+ * The account id space is split recursively on a ForkJoinPool down to ranges of range-size ids; each range is
+ * three grouped queries read in one consistent snapshot, so postings landing mid-check don't show up as drift.
+ * parallelism bounds how many connections it takes from OLTP, pause-ms spaces the ranges out further.
+ */
+@Service
+@Slf4j
+public class ReconciliationServiceImpl implements ReconciliationService {
+
+    // All sums come back as minor units (x100, the columns are decimal(19,2)), so a range is compared in long arrays.
+    // stored balance: the row plus any hot-account slots
+    private static final String RECORDED_BALANCES = "SELECT a.id, a.account_number, a.currency, CAST((a.balance + " +
+            "COALESCE((SELECT SUM(s.balance) FROM account_balance_slots s WHERE s.account_id = a.id), 0)) * 100 AS SIGNED) " +
+            "FROM accounts a WHERE a.id >= ? AND a.id < ?";
+
+    // deposits in, withdrawals and outgoing transfers out
+    private static final String POSTED_NET = "SELECT account_id, " +
+            "CAST(SUM(CASE WHEN transaction_type = 'DEPOSIT' THEN amount ELSE -amount END) * 100 AS SIGNED) FROM transactions " +
+            "WHERE status = 'SUCCESS' AND account_id >= ? AND account_id < ? GROUP BY account_id";
+
+    // in the receiving account's currency
+    private static final String RECEIVED_TRANSFERS = "SELECT a.id, CAST(SUM(COALESCE(t.converted_amount, t.amount)) * 100 AS SIGNED) FROM accounts a " +
+            "JOIN transactions t ON t.destination_account = a.account_number " +
+            "WHERE a.id >= ? AND a.id < ? AND t.transaction_type = 'TRANSFER' AND t.status = 'SUCCESS' GROUP BY a.id";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ReconciliationRunRepo reconciliationRunRepo;
+    private final ReconciliationMismatchRepo reconciliationMismatchRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTemplate;
+
+    private final long rangeSize;
+    private final long pauseMs;
+    private final ForkJoinPool pool;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ReconciliationServiceImpl(ReconciliationRunRepo reconciliationRunRepo,
+                                     ReconciliationMismatchRepo reconciliationMismatchRepo,
+                                     JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     @Value("${reconciliation.parallelism:2}") int parallelism,
+                                     @Value("${reconciliation.range-size:5000}") long rangeSize,
+                                     @Value("${reconciliation.pause-ms:0}") long pauseMs) {
+        this.reconciliationRunRepo = reconciliationRunRepo;
+        this.reconciliationMismatchRepo = reconciliationMismatchRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rangeSize = rangeSize;
+        this.pauseMs = pauseMs;
+        this.pool = new ForkJoinPool(parallelism);
+
+        // InnoDB consistent read: the three queries of a range all see the same moment
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+
+    @Override
+    public Response<ReconciliationRunDTO> startRun() {
+
+        if (!running.compareAndSet(false, true)) {
+            throw new TransactionConflictException("A reconciliation run is already in progress");
+        }
+
+        ReconciliationRun run;
+        try {
+            run = reconciliationRunRepo.save(ReconciliationRun.builder()
+                    .status(JobStatus.RUNNING)
+                    .startedAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+
+        pool.execute(() -> execute(run));
+
+        return Response.<ReconciliationRunDTO>builder()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .message("Reconciliation started")
+                .data(toDTO(run))
+                .build();
+    }
+
+    @Override
+    public Response<ReconciliationRunDTO> getLatestRun() {
+
+        ReconciliationRun run = reconciliationRunRepo.findFirstByOrderByIdDesc()
+                .orElseThrow(() -> new NotFoundException("No reconciliation has run yet"));
+
+        return Response.<ReconciliationRunDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Reconciliation run retrieved")
+                .data(toDTO(run))
+                .build();
+    }
+
+    @Override
+    public Response<List<ReconciliationMismatchDTO>> getMismatches(Long runId, int page, int size) {
+
+        if (!reconciliationRunRepo.existsById(runId)) {
+            throw new NotFoundException("Reconciliation run not found");
+        }
+
+        Page<ReconciliationMismatch> mismatches = reconciliationMismatchRepo.findByRunIdOrderByAccountId(runId, PageRequest.of(page, size));
+
+        return Response.<List<ReconciliationMismatchDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Mismatches retrieved")
+                .data(mismatches.getContent().stream().map(this::toDTO).toList())
+                .meta(Map.<String, Serializable>of(
+                        "currentPage", mismatches.getNumber(),
+                        "totalItems", mismatches.getTotalElements(),
+                        "totalPages", mismatches.getTotalPages(),
+                        "pageSize", mismatches.getSize()
+                ))
+                .build();
+    }
+
+
+    @Scheduled(cron = "${reconciliation.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (running.get()) {
+            log.warn("Skipping scheduled reconciliation, a run is still in progress");
+            return;
+        }
+        startRun();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+
+    // runs on the pool, so invoking the root task forks into the same bounded set of workers
+    private void execute(ReconciliationRun run) {
+        try {
+            Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM accounts");
+            Number minId = (Number) range.get("min_id");
+            Number maxId = (Number) range.get("max_id");
+
+            long[] totals = minId == null ? new long[2]
+                    : new RangeTask(run, minId.longValue(), maxId.longValue() + 1).invoke();
+
+            run.setAccountsChecked(totals[0]);
+            run.setMismatches(totals[1]);
+            run.setStatus(JobStatus.COMPLETED);
+            log.info("Reconciliation {} checked {} accounts, {} mismatches", run.getId(), totals[0], totals[1]);
+        } catch (RuntimeException e) {
+            log.error("Reconciliation {} failed: {}", run.getId(), e.getMessage());
+            run.setStatus(JobStatus.FAILED);
+            run.setLastError(truncate(e.getMessage()));
+        } finally {
+            run.setFinishedAt(LocalDateTime.now());
+            reconciliationRunRepo.save(run);
+            running.set(false);
+        }
+    }
+
+    // {accounts checked, mismatches} for ids in [from, to)
+    private class RangeTask extends RecursiveTask<long[]> {
+
+        private final ReconciliationRun run;
+        private final long from;
+        private final long to;
+
+        RangeTask(ReconciliationRun run, long from, long to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= rangeSize) {
+                return reconcileRange(run, from, to);
+            }
+            long mid = from + (to - from) / 2;
+            RangeTask left = new RangeTask(run, from, mid);
+            RangeTask right = new RangeTask(run, mid, to);
+            left.fork();
+            long[] r = right.compute();
+            long[] l = left.join();
+            return new long[]{l[0] + r[0], l[1] + r[1]};
+        }
+    }
+
+    private long[] reconcileRange(ReconciliationRun run, long from, long to) {
+
+        // indexed by account id - from, a range is at most range-size ids
+        int size = (int) (to - from);
+        String[] accountNumbers = new String[size];
+        String[] currencies = new String[size];
+        long[] recorded = new long[size];
+        long[] expected = new long[size];
+
+        snapshotTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query(RECORDED_BALANCES, (RowCallbackHandler) rs -> {
+                int i = (int) (rs.getLong(1) - from);
+                accountNumbers[i] = rs.getString(2);
+                currencies[i] = rs.getString(3);
+                recorded[i] = rs.getLong(4);
+            }, from, to);
+            jdbcTemplate.query(POSTED_NET, (RowCallbackHandler) rs -> expected[(int) (rs.getLong(1) - from)] += rs.getLong(2),
+                    from, to);
+            jdbcTemplate.query(RECEIVED_TRANSFERS, (RowCallbackHandler) rs -> expected[(int) (rs.getLong(1) - from)] += rs.getLong(2),
+                    from, to);
+        });
+
+        int accounts = 0;
+        List<ReconciliationMismatch> mismatches = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (accountNumbers[i] == null) {
+                continue; // no account with this id
+            }
+            accounts++;
+            if (recorded[i] != expected[i]) {
+                Currency currency = currencies[i] == null ? Currency.USD : Currency.valueOf(currencies[i]);
+                Money actual = new Money(recorded[i], currency);
+                Money wanted = new Money(expected[i], currency);
+                mismatches.add(ReconciliationMismatch.builder()
+                        .run(run)
+                        .accountId(from + i)
+                        .accountNumber(accountNumbers[i])
+                        .recordedBalance(actual)
+                        .expectedBalance(wanted)
+                        .difference(actual.minus(wanted))
+                        .build());
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            reconciliationMismatchRepo.saveAll(mismatches);
+        }
+
+        throttle();
+        return new long[]{accounts, mismatches.size()};
+    }
+
+    private void throttle() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        }
+    }
+
+
+    private ReconciliationRunDTO toDTO(ReconciliationRun run) {
+        return ReconciliationRunDTO.builder()
+                .id(run.getId())
+                .status(run.getStatus())
+                .accountsChecked(run.getAccountsChecked())
+                .mismatches(run.getMismatches())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .lastError(run.getLastError())
+                .build();
+    }
+
+    private ReconciliationMismatchDTO toDTO(ReconciliationMismatch mismatch) {
+        return ReconciliationMismatchDTO.builder()
+                .accountId(mismatch.getAccountId())
+                .accountNumber(mismatch.getAccountNumber())
+                .recordedBalance(mismatch.getRecordedBalance())
+                .expectedBalance(mismatch.getExpectedBalance())
+                .difference(mismatch.getDifference())
+                .build();
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,209 @@
+package com.phegon.phegonbank.security;
+
+
+import com.phegon.phegonbank.res.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user (or per-IP) rate limits on selected routes, answered with 429 and Retry-After once used up.
+ * Runs right after AuthFilter so the authenticated user is known.
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will be full again (GCRA, which behaves like
+ * a token bucket of `limit` tokens refilled over `period`). Taking a token is one CAS, no locks. A bucket that is
+ * full again carries no state, so the sweep can drop it without changing anyone's limit.
+ */
+@Component
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxKeys;
+    private final List<Rule> rules;
+
+    public RateLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.max-keys:100000}") int maxKeys,
+                           @Value("${rate-limit.rules:}") List<String> rules) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxKeys = maxKeys;
+        this.rules = rules.stream()
+                .filter(rule -> !rule.isBlank())
+                .map(rule -> Rule.parse(rule.trim(), meterRegistry))
+                .toList();
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || rules.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String path = request.getRequestURI();
+        for (Rule rule : rules) {
+            if (rule.matches(request.getMethod(), path)) {
+                long waitNanos = rule.acquire(key(rule, request), maxKeys);
+                if (waitNanos > 0) {
+                    reject(response, waitNanos);
+                    return;
+                }
+                break; // first matching rule wins
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+
+    // full buckets are the same as no bucket, dropping them keeps the maps down to the clients active right now
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        for (Rule rule : rules) {
+            rule.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+    }
+
+
+    // user id for logged in users; the client address otherwise (and for ip rules like login)
+    private Object key(Rule rule, HttpServletRequest request) {
+        if (rule.perUser) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof AuthUser authUser) {
+                return authUser.getUser().getId();
+            }
+        }
+        // behind a proxy this needs server.forward-headers-strategy so remote addr is the real client
+        return request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+
+        Response<?> errorResponse = Response.builder()
+                .statusCode(HttpStatus.TOO_MANY_REQUESTS.value()) //429
+                .message("Too many requests, please retry in " + retryAfterSeconds + " seconds")
+                .build();
+
+        response.setContentType("application/json");
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.getWriter().write(objectMapper.writeValueAsString(errorResponse));
+    }
+
+
+    /**
+     * One rate-limit.rules entry: "METHOD /path/pattern user|ip limit/seconds", e.g. "POST /api/transactions/** user 30/60".
+     * METHOD can be * for any method.
+     */
+    static final class Rule {
+
+        private final String method;
+        private final String pathPattern;
+        private final boolean perUser;
+
+        private final long emissionIntervalNanos; // period / limit, what one request costs
+        private final long burstToleranceNanos;   // period - one interval, so a full bucket allows `limit` at once
+
+        private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final Counter rejected;
+        private final Counter untracked;
+
+        private Rule(String method, String pathPattern, boolean perUser, long limit, long periodSeconds, MeterRegistry meterRegistry) {
+            this.method = method;
+            this.pathPattern = pathPattern;
+            this.perUser = perUser;
+
+            long periodNanos = TimeUnit.SECONDS.toNanos(periodSeconds);
+            this.emissionIntervalNanos = periodNanos / limit;
+            this.burstToleranceNanos = periodNanos - emissionIntervalNanos;
+
+            this.rejected = Counter.builder("rate-limit.rejected")
+                    .tag("route", method + " " + pathPattern)
+                    .description("Requests answered with 429")
+                    .register(meterRegistry);
+            this.untracked = Counter.builder("rate-limit.untracked")
+                    .tag("route", method + " " + pathPattern)
+                    .description("Requests let through unlimited because the bucket map was full")
+                    .register(meterRegistry);
+        }
+
+        static Rule parse(String rule, MeterRegistry meterRegistry) {
+            String[] parts = rule.split("\\s+");
+            String[] limit = parts.length == 4 ? parts[3].split("/") : new String[0];
+            if (limit.length != 2 || !(parts[2].equals("user") || parts[2].equals("ip"))) {
+                throw new IllegalArgumentException("Invalid rate-limit rule '" + rule + "', expected e.g. 'POST /api/transactions/** user 30/60'");
+            }
+            long requests = Long.parseLong(limit[0]);
+            long periodSeconds = Long.parseLong(limit[1]);
+            // a limit of 0 would divide by zero below, and one above the period in ns would cost nothing per request
+            if (requests < 1 || periodSeconds < 1 || requests > TimeUnit.SECONDS.toNanos(periodSeconds)) {
+                throw new IllegalArgumentException("Invalid rate-limit rule '" + rule + "', limit and seconds must be positive");
+            }
+            return new Rule(parts[0].toUpperCase(), parts[1], parts[2].equals("user"), requests, periodSeconds, meterRegistry);
+        }
+
+        boolean matches(String requestMethod, String path) {
+            return (method.equals("*") || method.equals(requestMethod)) && PATH_MATCHER.match(pathPattern, path);
+        }
+
+        // 0 if the request may go ahead, otherwise how long until it would have been allowed
+        long acquire(Object key, int maxKeys) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    // fail open rather than grow without bound; the sweep frees room within a period
+                    untracked.increment();
+                    return 0;
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+            }
+
+            while (true) {
+                long now = System.nanoTime();
+                long fullAt = bucket.get();
+                long start = fullAt - now > 0 ? fullAt : now;
+
+                long overBy = start - now - burstToleranceNanos;
+                if (overBy > 0) {
+                    rejected.increment();
+                    return overBy;
+                }
+                if (bucket.compareAndSet(fullAt, start + emissionIntervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.phegon.phegonbank.standing_order.controller;
+
+
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderRequest;
+import com.phegon.phegonbank.standing_order.services.StandingOrderService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/standing-orders")
+@RequiredArgsConstructor
+public class StandingOrderController {
+
+    private final StandingOrderService standingOrderService;
+
+    @PostMapping
+    public ResponseEntity<Response<?>> createStandingOrder(@RequestBody @Valid StandingOrderRequest request) {
+        return ResponseEntity.ok(standingOrderService.createStandingOrder(request));
+    }
+
+    @GetMapping
+    public ResponseEntity<Response<?>> getMyStandingOrders() {
+        return ResponseEntity.ok(standingOrderService.getMyStandingOrders());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Response<?>> cancelStandingOrder(@PathVariable Long id) {
+        return ResponseEntity.ok(standingOrderService.cancelStandingOrder(id));
+    }
+
+    @GetMapping("/{id}/executions")
+    public ResponseEntity<Response<?>> getExecutions(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(standingOrderService.getExecutions(id, page, size));
+    }
+}
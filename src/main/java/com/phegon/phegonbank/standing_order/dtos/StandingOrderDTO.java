@@ -0,0 +1,46 @@
+package com.phegon.phegonbank.standing_order.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.StandingOrderFrequency;
+import com.phegon.phegonbank.enums.StandingOrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandingOrderDTO {
+
+    private Long id;
+
+    private String sourceAccount;
+
+    private String destinationAccount;
+
+    private BigDecimal amount;
+
+    private String description;
+
+    private StandingOrderFrequency frequency;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    private LocalDateTime nextRunAt;
+
+    private StandingOrderStatus status;
+
+    private LocalDateTime createdAt;
+}
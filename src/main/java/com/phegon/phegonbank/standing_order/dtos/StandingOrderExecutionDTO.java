@@ -0,0 +1,34 @@
+package com.phegon.phegonbank.standing_order.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandingOrderExecutionDTO {
+
+    private Long id;
+
+    private LocalDate scheduledFor;
+
+    private TransactionStatus status;
+
+    private Long transactionId;
+
+    private String message;
+
+    private LocalDateTime executedAt;
+}
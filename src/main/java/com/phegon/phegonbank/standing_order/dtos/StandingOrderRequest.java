@@ -0,0 +1,37 @@
+package com.phegon.phegonbank.standing_order.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.phegon.phegonbank.enums.StandingOrderFrequency;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StandingOrderRequest {
+
+    @NotBlank(message = "Source account is required")
+    private String accountNumber;
+
+    @NotBlank(message = "Destination account is required")
+    private String destinationAccountNumber;
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than zero")
+    private BigDecimal amount;
+
+    private String description;
+
+    @NotNull(message = "Frequency is required")
+    private StandingOrderFrequency frequency;
+
+    @NotNull(message = "Start date is required")
+    private LocalDate startDate;
+
+    private LocalDate endDate; // optional, last day an occurrence may fall on
+}
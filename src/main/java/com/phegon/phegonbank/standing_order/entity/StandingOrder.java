@@ -0,0 +1,75 @@
+package com.phegon.phegonbank.standing_order.entity;
+
+
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.enums.StandingOrderFrequency;
+import com.phegon.phegonbank.enums.StandingOrderStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A recurring transfer. Occurrence n falls on startDate + n periods; nextRunAt is that day plus the order's own
+ * spreadSeconds, so orders due the same day are spread over the configured window instead of all firing at 00:00.
+ */
+@Entity
+@Data
+@Builder
+@Table(name = "standing_orders", indexes = {
+        @Index(name = "idx_standing_orders_due", columnList = "status, nextRunAt"),
+        @Index(name = "idx_standing_orders_user", columnList = "user_id")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+public class StandingOrder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false, length = 15)
+    private String sourceAccount;
+
+    @Column(nullable = false, length = 15)
+    private String destinationAccount;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StandingOrderFrequency frequency;
+
+    @Column(nullable = false)
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    // occurrences already scheduled, the next one is startDate + occurrences periods
+    private int occurrences;
+
+    private int spreadSeconds;
+
+    private LocalDateTime nextRunAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StandingOrderStatus status;
+
+    private int consecutiveFailures;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
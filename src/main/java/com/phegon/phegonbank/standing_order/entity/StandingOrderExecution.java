@@ -0,0 +1,47 @@
+package com.phegon.phegonbank.standing_order.entity;
+
+
+import com.phegon.phegonbank.enums.TransactionStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One occurrence of a standing order. PENDING until its posting commits (SUCCESS, in the same DB transaction) or fails
+@Entity
+@Data
+@Builder
+@Table(name = "standing_order_executions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_standing_order_execution_day", columnNames = {"standing_order_id", "scheduled_for"}),
+        indexes = @Index(name = "idx_standing_order_executions_status", columnList = "status, claimedAt"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class StandingOrderExecution {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "standing_order_id", nullable = false)
+    private StandingOrder standingOrder;
+
+    @Column(nullable = false)
+    private LocalDate scheduledFor;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TransactionStatus status;
+
+    private Long transactionId;
+
+    @Column(length = 500)
+    private String message;
+
+    private LocalDateTime claimedAt;
+    private LocalDateTime executedAt;
+}
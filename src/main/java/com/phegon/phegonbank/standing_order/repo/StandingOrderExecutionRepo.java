@@ -0,0 +1,20 @@
+package com.phegon.phegonbank.standing_order.repo;
+
+import com.phegon.phegonbank.standing_order.entity.StandingOrderExecution;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StandingOrderExecutionRepo extends JpaRepository<StandingOrderExecution, Long> {
+
+    Page<StandingOrderExecution> findByStandingOrderIdOrderByScheduledForDesc(Long standingOrderId, Pageable pageable);
+
+    // PENDING with no transaction long after being claimed = the instance running it died before its posting committed, safe to run again
+    @Query(value = "SELECT * FROM standing_order_executions WHERE status = 'PENDING' AND transaction_id IS NULL AND claimed_at < :before " +
+            "ORDER BY claimed_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StandingOrderExecution> lockStalePending(LocalDateTime before, int limit);
+}
@@ -0,0 +1,18 @@
+package com.phegon.phegonbank.standing_order.repo;
+
+import com.phegon.phegonbank.standing_order.entity.StandingOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StandingOrderRepo extends JpaRepository<StandingOrder, Long> {
+
+    List<StandingOrder> findByUserIdOrderByIdDesc(Long userId);
+
+    // the due-time index hands out the earliest due orders; SKIP LOCKED lets several pollers/instances share the work
+    @Query(value = "SELECT * FROM standing_orders WHERE status = 'ACTIVE' AND next_run_at <= :now " +
+            "ORDER BY next_run_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StandingOrder> lockDue(LocalDateTime now, int limit);
+}
@@ -0,0 +1,45 @@
+package com.phegon.phegonbank.standing_order.services;
+
+
+import com.phegon.phegonbank.enums.StandingOrderStatus;
+import com.phegon.phegonbank.standing_order.entity.StandingOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+// When standing orders run
+@Component
+public class StandingOrderCalendar {
+
+    @Value("${standing-order.spread-window-minutes:180}")
+    private int spreadWindowMinutes;
+
+
+    // fixed per order when it is created, so it runs at the same time of day every period
+    public int randomSpreadSeconds() {
+        return spreadWindowMinutes <= 0 ? 0 : ThreadLocalRandom.current().nextInt(spreadWindowMinutes * 60);
+    }
+
+    // Points nextRunAt at occurrence number `occurrences`, or completes the order once that is past its end date
+    public void scheduleNext(StandingOrder order) {
+        LocalDate day = occurrence(order, order.getOccurrences());
+
+        if (order.getEndDate() != null && day.isAfter(order.getEndDate())) {
+            order.setStatus(StandingOrderStatus.COMPLETED);
+            order.setNextRunAt(null);
+            return;
+        }
+        order.setNextRunAt(day.atStartOfDay().plusSeconds(order.getSpreadSeconds()));
+    }
+
+    // counted from the start date each time, so a monthly order on the 31st comes back to the 31st after February
+    private LocalDate occurrence(StandingOrder order, int n) {
+        return switch (order.getFrequency()) {
+            case DAILY -> order.getStartDate().plusDays(n);
+            case WEEKLY -> order.getStartDate().plusWeeks(n);
+            case MONTHLY -> order.getStartDate().plusMonths(n);
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package com.phegon.phegonbank.standing_order.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.enums.StandingOrderStatus;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.standing_order.entity.StandingOrder;
+import com.phegon.phegonbank.standing_order.entity.StandingOrderExecution;
+import com.phegon.phegonbank.standing_order.repo.StandingOrderExecutionRepo;
+import com.phegon.phegonbank.standing_order.repo.StandingOrderRepo;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import com.phegon.phegonbank.transaction.services.TransactionRetryExecutor;
+import com.phegon.phegonbank.transaction.services.TransactionService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs standing orders when they come due. Each poll claims the earliest due orders off the
+ * (status, next_run_at) index in one short transaction, which records a PENDING execution per occurrence and
+ * moves the order on to its next occurrence, then posts the transfers on a small pool. An execution only turns
+ * SUCCESS in the same DB transaction as its posting, so one left PENDING by a crashed instance is run again.
+ * The poll loop waits on whole batches, so it runs on its own thread and the scheduler only starts it.
+ */
+@Component
+@Slf4j
+public class StandingOrderExecutor {
+
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    private final StandingOrderRepo standingOrderRepo;
+    private final StandingOrderExecutionRepo standingOrderExecutionRepo;
+    private final StandingOrderCalendar standingOrderCalendar;
+    private final TransactionService transactionService;
+    private final TransactionRetryExecutor transactionRetryExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final int maxConsecutiveFailures;
+    private final long staleAfterMinutes;
+    private final ExecutorService workerPool;
+    private final ExecutorService poller;
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private record Claim(Long executionId, TransactionRequest request) {
+    }
+
+    public StandingOrderExecutor(StandingOrderRepo standingOrderRepo,
+                                 StandingOrderExecutionRepo standingOrderExecutionRepo,
+                                 StandingOrderCalendar standingOrderCalendar,
+                                 TransactionService transactionService,
+                                 TransactionRetryExecutor transactionRetryExecutor,
+                                 TransactionTemplate transactionTemplate,
+                                 BackgroundExecutors backgroundExecutors,
+                                 @Value("${standing-order.batch-size:200}") int batchSize,
+                                 @Value("${standing-order.workers:4}") int workers,
+                                 @Value("${standing-order.max-consecutive-failures:3}") int maxConsecutiveFailures,
+                                 @Value("${standing-order.stale-after-minutes:15}") long staleAfterMinutes) {
+        this.standingOrderRepo = standingOrderRepo;
+        this.standingOrderExecutionRepo = standingOrderExecutionRepo;
+        this.standingOrderCalendar = standingOrderCalendar;
+        this.transactionService = transactionService;
+        this.transactionRetryExecutor = transactionRetryExecutor;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.staleAfterMinutes = staleAfterMinutes;
+
+        this.workerPool = backgroundExecutors.newFixedPool("standing-order", workers);
+        this.poller = backgroundExecutors.newFixedPool("standing-order-poller", 1);
+    }
+
+
+    // a poll still going from last time just keeps going, no second one is queued behind it
+    @Scheduled(fixedDelayString = "${standing-order.poll-interval-ms:5000}")
+    public void runDue() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            poller.execute(() -> {
+                try {
+                    pollDue();
+                } catch (RuntimeException e) {
+                    log.error("Standing order poll failed", e);
+                } finally {
+                    polling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            polling.set(false);
+        }
+    }
+
+    private void pollDue() {
+        int executed = 0;
+        List<Claim> claims;
+        do {
+            claims = transactionTemplate.execute(status -> claim());
+
+            // the pool is what bounds how many postings run at once, the poller just waits for the batch
+            CompletableFuture.allOf(claims.stream()
+                    .map(claim -> CompletableFuture.runAsync(() -> execute(claim), workerPool))
+                    .toArray(CompletableFuture[]::new)).join();
+
+            executed += claims.size();
+        } while (claims.size() == batchSize);
+
+        if (executed > 0) {
+            log.info("Ran {} standing order payments", executed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdown();
+        workerPool.shutdown();
+    }
+
+
+    private List<Claim> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Claim> claims = new ArrayList<>();
+
+        for (StandingOrderExecution execution : standingOrderExecutionRepo.lockStalePending(now.minusMinutes(staleAfterMinutes), batchSize)) {
+            log.warn("Standing order run {} was left pending, running it again", execution.getId());
+            execution.setClaimedAt(now);
+            claims.add(new Claim(execution.getId(), toRequest(execution.getStandingOrder())));
+        }
+
+        // an order that was due several times while we were down gets one occurrence per poll until it catches up
+        for (StandingOrder order : standingOrderRepo.lockDue(now, batchSize - claims.size())) {
+            StandingOrderExecution execution = standingOrderExecutionRepo.save(StandingOrderExecution.builder()
+                    .standingOrder(order)
+                    .scheduledFor(order.getNextRunAt().toLocalDate())
+                    .status(TransactionStatus.PENDING)
+                    .claimedAt(now)
+                    .build());
+
+            order.setOccurrences(order.getOccurrences() + 1);
+            standingOrderCalendar.scheduleNext(order);
+            order.setUpdatedAt(now);
+
+            claims.add(new Claim(execution.getId(), toRequest(order)));
+        }
+        return claims;
+    }
+
+    private void execute(Claim claim) {
+        try {
+            transactionRetryExecutor.execute(() -> transactionTemplate.execute(status -> {
+                Transaction transaction = transactionService.postTransaction(claim.request());
+
+                StandingOrderExecution execution = standingOrderExecutionRepo.findById(claim.executionId()).orElseThrow();
+                // PENDING if a velocity rule held it for review
+                execution.setStatus(transaction.getStatus());
+                execution.setTransactionId(transaction.getId());
+                execution.setExecutedAt(LocalDateTime.now());
+
+                StandingOrder order = execution.getStandingOrder();
+                if (order.getConsecutiveFailures() != 0) {
+                    order.setConsecutiveFailures(0);
+                }
+                return transaction;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Standing order run {} failed: {}", claim.executionId(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> recordFailure(claim.executionId(), e));
+        }
+    }
+
+    private void recordFailure(Long executionId, RuntimeException e) {
+        StandingOrderExecution execution = standingOrderExecutionRepo.findById(executionId).orElseThrow();
+        execution.setStatus(TransactionStatus.FAILED);
+        execution.setMessage(truncate(e.getMessage()));
+        execution.setExecutedAt(LocalDateTime.now());
+
+        StandingOrder order = execution.getStandingOrder();
+        order.setConsecutiveFailures(order.getConsecutiveFailures() + 1);
+        order.setUpdatedAt(LocalDateTime.now());
+
+        // e.g. the account keeps running dry or was closed, stop until the owner sorts it out
+        if (order.getStatus() == StandingOrderStatus.ACTIVE && order.getConsecutiveFailures() >= maxConsecutiveFailures) {
+            order.setStatus(StandingOrderStatus.PAUSED);
+            log.warn("Standing order {} paused after {} failed runs", order.getId(), order.getConsecutiveFailures());
+        }
+    }
+
+    private TransactionRequest toRequest(StandingOrder order) {
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(TransactionType.TRANSFER);
+        request.setAccountNumber(order.getSourceAccount());
+        request.setDestinationAccountNumber(order.getDestinationAccount());
+        request.setAmount(order.getAmount());
+        request.setDescription(order.getDescription() != null ? order.getDescription() : "Standing order #" + order.getId());
+        return request;
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
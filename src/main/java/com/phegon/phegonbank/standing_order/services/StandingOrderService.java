@@ -0,0 +1,15 @@
+package com.phegon.phegonbank.standing_order.services;
+
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderDTO;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderExecutionDTO;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderRequest;
+
+import java.util.List;
+
+public interface StandingOrderService {
+    Response<StandingOrderDTO> createStandingOrder(StandingOrderRequest request);
+    Response<List<StandingOrderDTO>> getMyStandingOrders();
+    Response<?> cancelStandingOrder(Long id);
+    Response<List<StandingOrderExecutionDTO>> getExecutions(Long id, int page, int size);
+}
@@ -0,0 +1,193 @@
+package com.phegon.phegonbank.standing_order.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.auth_users.services.UserService;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.StandingOrderStatus;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderDTO;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderExecutionDTO;
+import com.phegon.phegonbank.standing_order.dtos.StandingOrderRequest;
+import com.phegon.phegonbank.standing_order.entity.StandingOrder;
+import com.phegon.phegonbank.standing_order.entity.StandingOrderExecution;
+import com.phegon.phegonbank.standing_order.repo.StandingOrderExecutionRepo;
+import com.phegon.phegonbank.standing_order.repo.StandingOrderRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StandingOrderServiceImpl implements StandingOrderService {
+
+    private final StandingOrderRepo standingOrderRepo;
+    private final StandingOrderExecutionRepo standingOrderExecutionRepo;
+    private final StandingOrderCalendar standingOrderCalendar;
+    private final AccountRepo accountRepo;
+    private final UserService userService;
+
+
+    @Override
+    @Transactional
+    public Response<StandingOrderDTO> createStandingOrder(StandingOrderRequest request) {
+
+        User user = userService.getCurrentLoggedInUser();
+
+        Account source = accountRepo.findByAccountNumber(request.getAccountNumber())
+                .orElseThrow(() -> new NotFoundException("Account not found"));
+        if (!source.getUser().getId().equals(user.getId())) {
+            throw new BadRequestException("Account does not belong to the authenticated user");
+        }
+        if (source.getStatus() != AccountStatus.ACTIVE) {
+            throw new BadRequestException("Account " + source.getAccountNumber() + " is not active");
+        }
+        if (request.getAccountNumber().equals(request.getDestinationAccountNumber())) {
+            throw new BadRequestException("Source and destination account cannot be the same");
+        }
+        accountRepo.findByAccountNumber(request.getDestinationAccountNumber())
+                .orElseThrow(() -> new NotFoundException("Destination Account not found"));
+
+        if (request.getStartDate().isBefore(LocalDate.now())) {
+            throw new BadRequestException("Start date cannot be in the past");
+        }
+        if (request.getEndDate() != null && request.getEndDate().isBefore(request.getStartDate())) {
+            throw new BadRequestException("End date cannot be before the start date");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        StandingOrder order = StandingOrder.builder()
+                .user(user)
+                .sourceAccount(request.getAccountNumber())
+                .destinationAccount(request.getDestinationAccountNumber())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .frequency(request.getFrequency())
+                .startDate(request.getStartDate())
+                .endDate(request.getEndDate())
+                .spreadSeconds(standingOrderCalendar.randomSpreadSeconds())
+                .status(StandingOrderStatus.ACTIVE)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        standingOrderCalendar.scheduleNext(order);
+
+        StandingOrder saved = standingOrderRepo.save(order);
+        log.info("Standing order {} created, first run at {}", saved.getId(), saved.getNextRunAt());
+
+        return Response.<StandingOrderDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Standing order created")
+                .data(toDTO(saved))
+                .build();
+    }
+
+    @Override
+    public Response<List<StandingOrderDTO>> getMyStandingOrders() {
+
+        User user = userService.getCurrentLoggedInUser();
+
+        List<StandingOrderDTO> orders = standingOrderRepo.findByUserIdOrderByIdDesc(user.getId()).stream()
+                .map(this::toDTO)
+                .toList();
+
+        return Response.<List<StandingOrderDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Standing orders retrieved")
+                .data(orders)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public Response<?> cancelStandingOrder(Long id) {
+
+        StandingOrder order = myOrder(id);
+
+        if (order.getStatus() == StandingOrderStatus.ACTIVE || order.getStatus() == StandingOrderStatus.PAUSED) {
+            order.setStatus(StandingOrderStatus.CANCELLED);
+            order.setNextRunAt(null);
+            order.setUpdatedAt(LocalDateTime.now());
+            standingOrderRepo.save(order);
+        }
+
+        return Response.builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Standing order cancelled")
+                .build();
+    }
+
+    @Override
+    public Response<List<StandingOrderExecutionDTO>> getExecutions(Long id, int page, int size) {
+
+        StandingOrder order = myOrder(id);
+
+        Page<StandingOrderExecution> executions = standingOrderExecutionRepo
+                .findByStandingOrderIdOrderByScheduledForDesc(order.getId(), PageRequest.of(page, size));
+
+        return Response.<List<StandingOrderExecutionDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Standing order runs retrieved")
+                .data(executions.getContent().stream().map(this::toDTO).toList())
+                .meta(Map.<String, Serializable>of(
+                        "currentPage", executions.getNumber(),
+                        "totalItems", executions.getTotalElements(),
+                        "totalPages", executions.getTotalPages(),
+                        "pageSize", executions.getSize()
+                ))
+                .build();
+    }
+
+
+    private StandingOrder myOrder(Long id) {
+        User user = userService.getCurrentLoggedInUser();
+        StandingOrder order = standingOrderRepo.findById(id)
+                .orElseThrow(() -> new NotFoundException("Standing order not found"));
+        if (!order.getUser().getId().equals(user.getId())) {
+            throw new NotFoundException("Standing order not found");
+        }
+        return order;
+    }
+
+    private StandingOrderDTO toDTO(StandingOrder order) {
+        return StandingOrderDTO.builder()
+                .id(order.getId())
+                .sourceAccount(order.getSourceAccount())
+                .destinationAccount(order.getDestinationAccount())
+                .amount(order.getAmount())
+                .description(order.getDescription())
+                .frequency(order.getFrequency())
+                .startDate(order.getStartDate())
+                .endDate(order.getEndDate())
+                .nextRunAt(order.getNextRunAt())
+                .status(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .build();
+    }
+
+    private StandingOrderExecutionDTO toDTO(StandingOrderExecution execution) {
+        return StandingOrderExecutionDTO.builder()
+                .id(execution.getId())
+                .scheduledFor(execution.getScheduledFor())
+                .status(execution.getStatus())
+                .transactionId(execution.getTransactionId())
+                .message(execution.getMessage())
+                .executedAt(execution.getExecutedAt())
+                .build();
+    }
+}
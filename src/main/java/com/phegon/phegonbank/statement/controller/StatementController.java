@@ -0,0 +1,31 @@
+package com.phegon.phegonbank.statement.controller;
+
+
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.statement.services.StatementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/statements")
+@RequiredArgsConstructor
+public class StatementController {
+
+    private final StatementService statementService;
+
+    // period as yyyy-MM. Starting a period again resumes it from its unfinished partitions
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/runs/{period}")
+    public ResponseEntity<Response<?>> startRun(@PathVariable String period) {
+        Response<?> response = statementService.startRun(period);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('AUDITOR')")
+    @GetMapping("/runs/{period}")
+    public ResponseEntity<Response<?>> getRun(@PathVariable String period) {
+        return ResponseEntity.ok(statementService.getRun(period));
+    }
+}
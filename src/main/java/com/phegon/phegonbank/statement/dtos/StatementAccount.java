@@ -0,0 +1,6 @@
+package com.phegon.phegonbank.statement.dtos;
+
+// the account columns a statement needs, read with plain JDBC
+public record StatementAccount(Long id, String accountNumber, String accountType, String currency,
+                               String holderName, String email) {
+}
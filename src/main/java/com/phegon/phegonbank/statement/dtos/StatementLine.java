@@ -0,0 +1,10 @@
+package com.phegon.phegonbank.statement.dtos;
+
+import com.phegon.phegonbank.money.Money;
+
+import java.time.LocalDateTime;
+
+// one posting on a statement, balance is the running balance after it
+public record StatementLine(LocalDateTime postedAt, Long transactionId, String type, String direction,
+                            Money amount, Money balance, String description, String counterparty) {
+}
@@ -0,0 +1,37 @@
+package com.phegon.phegonbank.statement.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.JobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementRunDTO {
+
+    private Long id;
+
+    private String period;
+
+    private JobStatus status;
+
+    private int totalPartitions;
+
+    private int completedPartitions;
+
+    private long accountsProcessed;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,47 @@
+package com.phegon.phegonbank.statement.entity;
+
+
+import com.phegon.phegonbank.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// accounts with fromAccountId <= id < toAccountId
+@Entity
+@Data
+@Builder
+@Table(name = "statement_partitions", indexes = @Index(name = "idx_statement_partitions_run_status", columnList = "run_id, status"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatementPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private StatementRun run;
+
+    @Column(nullable = false)
+    private Long fromAccountId;
+
+    @Column(nullable = false)
+    private Long toAccountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    private int accounts;
+
+    private LocalDateTime claimedAt;
+    private LocalDateTime completedAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -0,0 +1,39 @@
+package com.phegon.phegonbank.statement.entity;
+
+
+import com.phegon.phegonbank.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One statement run per month ("2026-09"). Its partitions are the checkpoints a restarted run resumes from
+@Entity
+@Data
+@Builder
+@Table(name = "statement_runs")
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatementRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 7)
+    private String period;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status;
+
+    private int totalPartitions;
+    private int completedPartitions;
+    private long accountsProcessed;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
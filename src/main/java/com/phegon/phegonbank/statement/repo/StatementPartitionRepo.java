@@ -0,0 +1,35 @@
+package com.phegon.phegonbank.statement.repo;
+
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.statement.entity.StatementPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface StatementPartitionRepo extends JpaRepository<StatementPartition, Long> {
+
+    // workers on any instance take the next free partition without blocking on the ones already taken
+    @Query(value = "SELECT * FROM statement_partitions WHERE run_id = :runId AND status = 'PENDING' " +
+            "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<StatementPartition> claimNext(Long runId);
+
+    // failed partitions, and RUNNING ones whose worker died (claimed too long ago), go back in the queue
+    @Modifying
+    @Query("UPDATE StatementPartition p SET p.status = com.phegon.phegonbank.enums.JobStatus.PENDING " +
+            "WHERE p.run.id = :runId AND (p.status = com.phegon.phegonbank.enums.JobStatus.FAILED " +
+            "OR (p.status = com.phegon.phegonbank.enums.JobStatus.RUNNING AND p.claimedAt < :staleBefore))")
+    int requeueUnfinished(Long runId, LocalDateTime staleBefore);
+
+    // what requeueUnfinished would give back, plus what is already pending
+    @Query("SELECT COUNT(p) FROM StatementPartition p WHERE p.run.id = :runId " +
+            "AND (p.status = com.phegon.phegonbank.enums.JobStatus.PENDING " +
+            "OR (p.status = com.phegon.phegonbank.enums.JobStatus.RUNNING AND p.claimedAt < :staleBefore))")
+    long countClaimable(Long runId, LocalDateTime staleBefore);
+
+    long countByRunIdAndStatus(Long runId, JobStatus status);
+
+    long countByRunId(Long runId);
+}
@@ -0,0 +1,23 @@
+package com.phegon.phegonbank.statement.repo;
+
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.statement.entity.StatementRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StatementRunRepo extends JpaRepository<StatementRun, Long> {
+
+    Optional<StatementRun> findByPeriod(String period);
+
+    List<StatementRun> findByStatus(JobStatus status);
+
+    // partitions finish on several threads (and instances), so progress is bumped in SQL rather than read-modify-write
+    @Modifying
+    @Query("UPDATE StatementRun r SET r.completedPartitions = r.completedPartitions + 1, " +
+            "r.accountsProcessed = r.accountsProcessed + :accounts WHERE r.id = :runId")
+    int addProgress(Long runId, long accounts);
+}
@@ -0,0 +1,221 @@
+package com.phegon.phegonbank.statement.services;
+
+
+import com.phegon.phegonbank.csv.Csv;
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.ledger.services.LedgerService;
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.statement.dtos.StatementAccount;
+import com.phegon.phegonbank.statement.dtos.StatementLine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the statements for one partition (a range of account ids). The month's ledger legs for the whole range
+ * are read in one ordered, streamed query, and each account's statement is written as soon as the stream moves
+ * past it, so a partition holds at most one account's month in memory.
+ */
+@Component
+@Slf4j
+public class StatementGenerator {
+
+    // accounts that were open at some point during the month
+    private static final String ACCOUNTS_QUERY = "SELECT a.id, a.account_number, a.account_type, a.currency, " +
+            "u.first_name, u.last_name, u.email FROM accounts a JOIN users u ON u.id = a.user_id " +
+            "WHERE a.id >= ? AND a.id < ? AND a.created_at < ? AND (a.closed_at IS NULL OR a.closed_at >= ?) ORDER BY a.id";
+
+    // amounts come back as minor units, so the running balance is long arithmetic with no BigDecimal per row
+    private static final String POSTINGS_QUERY = "SELECT e.account_id, e.posted_at, e.transaction_id, t.transaction_type, " +
+            "e.direction, CAST(e.amount * 100 AS SIGNED), t.description, t.source_account, t.destination_account " +
+            "FROM ledger_entries e JOIN transactions t ON t.id = e.transaction_id " +
+            "WHERE e.account_id >= ? AND e.account_id < ? AND e.posted_at >= ? AND e.posted_at < ? " +
+            "ORDER BY e.account_id, e.posted_at, e.transaction_id";
+
+    private static final String CSV_HEADER = "date,transactionId,type,direction,amount,balance,description,counterparty";
+    private static final DateTimeFormatter PERIOD_LABEL = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TemplateEngine templateEngine;
+    private final StatementWriter statementWriter;
+    private final LedgerService ledgerService;
+
+    public StatementGenerator(JdbcTemplate jdbcTemplate, DataSource dataSource, TemplateEngine templateEngine,
+                              StatementWriter statementWriter, LedgerService ledgerService,
+                              @Value("${transaction.export.fetch-size:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.templateEngine = templateEngine;
+        this.statementWriter = statementWriter;
+        this.ledgerService = ledgerService;
+
+        // row-by-row streaming on MySQL, same as the transaction export
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+
+    // returns how many statements were written
+    public int generate(YearMonth period, long fromAccountId, long toAccountId) {
+
+        LocalDateTime start = period.atDay(1).atStartOfDay();
+        LocalDateTime end = period.plusMonths(1).atDay(1).atStartOfDay();
+
+        List<StatementAccount> accounts = jdbcTemplate.query(ACCOUNTS_QUERY, (rs, rowNum) -> new StatementAccount(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                fullName(rs.getString(5), rs.getString(6)), rs.getString(7)), fromAccountId, toAccountId, end, start);
+
+        if (accounts.isEmpty()) {
+            return 0;
+        }
+
+        // from the daily snapshots, not the accounts' whole history
+        Map<Long, BigDecimal> openingBalances = ledgerService.balancesAt(fromAccountId, toAccountId, start);
+
+        PartitionWriter writer = new PartitionWriter(period, accounts, openingBalances);
+        streamingJdbcTemplate.query(POSTINGS_QUERY, writer, fromAccountId, toAccountId, start, end);
+        writer.finish();
+
+        return accounts.size();
+    }
+
+
+    // Walks the partition's accounts in id order alongside the postings stream (also in account id order).
+    // Accounts the stream skips over had no postings that month and still get a statement
+    private class PartitionWriter implements RowCallbackHandler {
+
+        private final YearMonth period;
+        private final List<StatementAccount> accounts;
+        private final Map<Long, BigDecimal> openingBalances;
+
+        private int next = 0;
+        private StatementAccount current;
+        private Money opening;
+        private Money balance;
+        private final List<StatementLine> lines = new ArrayList<>();
+
+        PartitionWriter(YearMonth period, List<StatementAccount> accounts, Map<Long, BigDecimal> openingBalances) {
+            this.period = period;
+            this.accounts = accounts;
+            this.openingBalances = openingBalances;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long accountId = rs.getLong(1);
+
+            if ((current == null || current.id() != accountId) && !moveTo(accountId)) {
+                return; // leg of an account outside the statement set
+            }
+
+            String direction = rs.getString(5);
+            Money amount = new Money(rs.getLong(6), balance.currency());
+            balance = "CREDIT".equals(direction) ? balance.plus(amount) : balance.minus(amount);
+
+            // the other side of a transfer
+            String counterparty = "CREDIT".equals(direction) ? rs.getString(8) : rs.getString(9);
+
+            lines.add(new StatementLine(rs.getTimestamp(2).toLocalDateTime(), rs.getLong(3), rs.getString(4),
+                    direction, amount, balance, rs.getString(7), counterparty));
+        }
+
+        void finish() {
+            moveTo(Long.MAX_VALUE);
+        }
+
+        // writes the open statement and those of quiet accounts before accountId, then opens accountId if it is ours
+        private boolean moveTo(long accountId) {
+            if (current != null) {
+                write();
+            }
+            while (next < accounts.size() && accounts.get(next).id() < accountId) {
+                open(accounts.get(next++));
+                write();
+            }
+            if (next < accounts.size() && accounts.get(next).id() == accountId) {
+                open(accounts.get(next++));
+                return true;
+            }
+            return false;
+        }
+
+        private void open(StatementAccount account) {
+            current = account;
+            Currency currency = account.currency() == null ? Currency.USD : Currency.valueOf(account.currency());
+            BigDecimal openingBalance = openingBalances.get(account.id());
+            opening = openingBalance == null ? Money.zero(currency) : Money.of(openingBalance, currency);
+            balance = opening;
+            lines.clear();
+        }
+
+        private void write() {
+            statementWriter.write(period, current.accountNumber(), renderHtml(current), renderCsv());
+            current = null;
+        }
+
+        private String renderHtml(StatementAccount account) {
+            long credits = 0;
+            long debits = 0;
+            for (StatementLine line : lines) {
+                if ("CREDIT".equals(line.direction())) {
+                    credits += line.amount().minorUnits();
+                } else {
+                    debits += line.amount().minorUnits();
+                }
+            }
+
+            Context context = new Context();
+            context.setVariable("name", account.holderName());
+            context.setVariable("accountNumber", account.accountNumber());
+            context.setVariable("accountType", account.accountType());
+            context.setVariable("currency", account.currency());
+            context.setVariable("period", period.format(PERIOD_LABEL));
+            context.setVariable("openingBalance", opening);
+            context.setVariable("closingBalance", balance);
+            context.setVariable("totalCredits", new Money(credits, opening.currency()));
+            context.setVariable("totalDebits", new Money(debits, opening.currency()));
+            context.setVariable("lines", lines);
+            return templateEngine.process("monthly-statement", context);
+        }
+
+        private String renderCsv() {
+            StringBuilder csv = new StringBuilder(CSV_HEADER.length() + 1 + lines.size() * 96);
+            csv.append(CSV_HEADER).append('\n');
+            for (StatementLine line : lines) {
+                csv.append(line.postedAt()).append(',')
+                        .append(line.transactionId()).append(',')
+                        .append(line.type()).append(',')
+                        .append(line.direction()).append(',');
+                line.amount().appendTo(csv).append(',');
+                line.balance().appendTo(csv).append(',')
+                        .append(Csv.value(line.description())).append(',')
+                        .append(Csv.value(line.counterparty())).append('\n');
+            }
+            return csv.toString();
+        }
+    }
+
+
+    private static String fullName(String firstName, String lastName) {
+        if (lastName == null || lastName.isBlank()) {
+            return firstName;
+        }
+        return firstName == null ? lastName : firstName + " " + lastName;
+    }
+}
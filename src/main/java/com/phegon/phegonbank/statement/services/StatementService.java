@@ -0,0 +1,9 @@
+package com.phegon.phegonbank.statement.services;
+
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.statement.dtos.StatementRunDTO;
+
+public interface StatementService {
+    Response<StatementRunDTO> startRun(String period);
+    Response<StatementRunDTO> getRun(String period);
+}
@@ -0,0 +1,316 @@
+package com.phegon.phegonbank.statement.services;
+
+
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.statement.dtos.StatementRunDTO;
+import com.phegon.phegonbank.statement.entity.StatementPartition;
+import com.phegon.phegonbank.statement.entity.StatementRun;
+import com.phegon.phegonbank.statement.repo.StatementPartitionRepo;
+import com.phegon.phegonbank.statement.repo.StatementRunRepo;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Monthly statement runs. A run splits the accounts into id ranges (statement_partitions) and a fixed pool of
+ * workers keeps claiming the next pending range until none are left. A partition is marked COMPLETED only once
+ * all of its statements are written, so a run that dies part way is resumed from the partitions still pending,
+ * on startup, by the periodic resume check or by starting the same period again. Several instances can work on one run at the same time.
+ */
+@Service
+@Slf4j
+public class StatementServiceImpl implements StatementService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final StatementRunRepo statementRunRepo;
+    private final StatementPartitionRepo statementPartitionRepo;
+    private final StatementGenerator statementGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int workers;
+    private final long partitionSize;
+    private final long partitionTimeoutMinutes;
+    private final ExecutorService workerPool;
+
+    // periods this instance is currently working on
+    private final Set<String> activeRuns = ConcurrentHashMap.newKeySet();
+
+    public StatementServiceImpl(StatementRunRepo statementRunRepo, StatementPartitionRepo statementPartitionRepo,
+                                StatementGenerator statementGenerator, JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                BackgroundExecutors backgroundExecutors, DataSource dataSource,
+                                @Value("${statement.workers:0}") int workers,
+                                @Value("${statement.partition-size:1000}") long partitionSize,
+                                @Value("${statement.partition-timeout-minutes:30}") long partitionTimeoutMinutes) {
+        this.statementRunRepo = statementRunRepo;
+        this.statementPartitionRepo = statementPartitionRepo;
+        this.statementGenerator = statementGenerator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.partitionSize = partitionSize;
+        this.partitionTimeoutMinutes = partitionTimeoutMinutes;
+
+        // 0 = one worker per core. Rendering is CPU bound and each worker holds one DB connection while streaming,
+        // so the run never gets more than half the pool, the rest stays for requests
+        int poolSize = dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : 10;
+        int requested = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.workers = Math.min(requested, Math.max(1, poolSize / 2));
+        if (this.workers < requested) {
+            log.info("Statement workers capped at {} by the connection pool size {}", this.workers, poolSize);
+        }
+
+        this.workerPool = backgroundExecutors.newFixedPool("statement", this.workers);
+    }
+
+
+    @Override
+    public Response<StatementRunDTO> startRun(String period) {
+
+        YearMonth month = parsePeriod(period);
+        if (!month.isBefore(YearMonth.now())) {
+            throw new BadRequestException("Statements can only be generated for a month that has ended");
+        }
+
+        StatementRun run = statementRunRepo.findByPeriod(month.toString())
+                .orElseGet(() -> createRun(month));
+
+        if (run.getStatus() == JobStatus.COMPLETED) {
+            return Response.<StatementRunDTO>builder()
+                    .statusCode(HttpStatus.OK.value())
+                    .message("Statements for " + month + " were already generated")
+                    .data(toDTO(run))
+                    .build();
+        }
+
+        launch(run);
+
+        return Response.<StatementRunDTO>builder()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .message("Statement run started")
+                .data(toDTO(run))
+                .build();
+    }
+
+    @Override
+    public Response<StatementRunDTO> getRun(String period) {
+
+        StatementRun run = statementRunRepo.findByPeriod(parsePeriod(period).toString())
+                .orElseThrow(() -> new NotFoundException("No statement run for " + period));
+
+        return Response.<StatementRunDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Statement run retrieved")
+                .data(toDTO(run))
+                .build();
+    }
+
+
+    // last month's statements, early on the 1st
+    @Scheduled(cron = "${statement.cron:0 0 1 1 * *}")
+    public void generateLastMonth() {
+        startRun(YearMonth.now().minusMonths(1).toString());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedRuns() {
+        for (StatementRun run : statementRunRepo.findByStatus(JobStatus.RUNNING)) {
+            log.info("Resuming statement run {}", run.getPeriod());
+            launch(run);
+        }
+    }
+
+    // Partitions a dead worker left RUNNING only become claimable after partition-timeout-minutes, which is
+    // usually long after startup, so RUNNING runs nobody here works on are relaunched until they finish
+    @Scheduled(initialDelayString = "${statement.resume-interval-ms:300000}",
+            fixedDelayString = "${statement.resume-interval-ms:300000}")
+    public void resumeStalledRuns() {
+        for (StatementRun run : statementRunRepo.findByStatus(JobStatus.RUNNING)) {
+            if (!activeRuns.contains(run.getPeriod()) && statementPartitionRepo.countClaimable(run.getId(),
+                    LocalDateTime.now().minusMinutes(partitionTimeoutMinutes)) > 0) {
+                log.info("Resuming stalled statement run {}", run.getPeriod());
+                launch(run);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // unfinished partitions stay RUNNING and are picked up again once they time out
+        workerPool.shutdownNow();
+    }
+
+
+    private StatementRun createRun(YearMonth month) {
+
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM accounts");
+        Number minId = (Number) range.get("min_id");
+        Number maxId = (Number) range.get("max_id");
+
+        try {
+            return transactionTemplate.execute(status -> {
+                StatementRun run = statementRunRepo.save(StatementRun.builder()
+                        .period(month.toString())
+                        .status(JobStatus.RUNNING)
+                        .startedAt(LocalDateTime.now())
+                        .build());
+
+                List<StatementPartition> partitions = new ArrayList<>();
+                if (minId != null) {
+                    for (long from = minId.longValue(); from <= maxId.longValue(); from += partitionSize) {
+                        partitions.add(StatementPartition.builder()
+                                .run(run)
+                                .fromAccountId(from)
+                                .toAccountId(from + partitionSize)
+                                .status(JobStatus.PENDING)
+                                .build());
+                    }
+                }
+                statementPartitionRepo.saveAll(partitions);
+
+                run.setTotalPartitions(partitions.size());
+                log.info("Statement run {} created with {} partitions", month, partitions.size());
+                return statementRunRepo.save(run);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // another instance created this period's run first, help with that one
+            return statementRunRepo.findByPeriod(month.toString()).orElseThrow(() -> e);
+        }
+    }
+
+    private void launch(StatementRun run) {
+
+        if (!activeRuns.add(run.getPeriod())) {
+            return; // already being worked on here
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            statementPartitionRepo.requeueUnfinished(run.getId(), LocalDateTime.now().minusMinutes(partitionTimeoutMinutes));
+            statementRunRepo.findById(run.getId()).ifPresent(resumed -> resumed.setStatus(JobStatus.RUNNING));
+        });
+
+        YearMonth month = YearMonth.parse(run.getPeriod());
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            loops[i] = CompletableFuture.runAsync(() -> work(run.getId(), month), workerPool);
+        }
+
+        CompletableFuture.allOf(loops).whenComplete((ignored, error) -> {
+            activeRuns.remove(run.getPeriod());
+            finish(run.getId());
+        });
+    }
+
+    // one worker: claim a partition, generate it, checkpoint it, repeat
+    private void work(Long runId, YearMonth month) {
+        while (!Thread.currentThread().isInterrupted()) {
+
+            StatementPartition partition = transactionTemplate.execute(status -> statementPartitionRepo.claimNext(runId)
+                    .map(claimed -> {
+                        claimed.setStatus(JobStatus.RUNNING);
+                        claimed.setClaimedAt(LocalDateTime.now());
+                        return claimed;
+                    })
+                    .orElse(null));
+
+            if (partition == null) {
+                return;
+            }
+
+            try {
+                int accounts = statementGenerator.generate(month, partition.getFromAccountId(), partition.getToAccountId());
+
+                transactionTemplate.executeWithoutResult(status -> {
+                    StatementPartition done = statementPartitionRepo.findById(partition.getId()).orElseThrow();
+                    done.setStatus(JobStatus.COMPLETED);
+                    done.setAccounts(accounts);
+                    done.setCompletedAt(LocalDateTime.now());
+                    statementRunRepo.addProgress(runId, accounts);
+                });
+            } catch (RuntimeException e) {
+                log.error("Statement partition {} ({}-{}) failed: {}", partition.getId(),
+                        partition.getFromAccountId(), partition.getToAccountId(), e.getMessage());
+
+                transactionTemplate.executeWithoutResult(status -> statementPartitionRepo.findById(partition.getId())
+                        .ifPresent(failed -> {
+                            failed.setStatus(JobStatus.FAILED);
+                            failed.setLastError(truncate(e.getMessage()));
+                        }));
+            }
+        }
+    }
+
+    // Completed once every partition is; otherwise FAILED, and starting the period again retries what is left.
+    // Partitions another instance is still working on leave the run RUNNING
+    private void finish(Long runId) {
+        transactionTemplate.executeWithoutResult(status -> statementRunRepo.findById(runId).ifPresent(run -> {
+            long completed = statementPartitionRepo.countByRunIdAndStatus(runId, JobStatus.COMPLETED);
+            long running = statementPartitionRepo.countByRunIdAndStatus(runId, JobStatus.RUNNING);
+
+            if (completed == run.getTotalPartitions()) {
+                run.setStatus(JobStatus.COMPLETED);
+                run.setFinishedAt(LocalDateTime.now());
+                log.info("Statement run {} completed, {} statements", run.getPeriod(), run.getAccountsProcessed());
+            } else if (running == 0) {
+                run.setStatus(JobStatus.FAILED);
+                log.warn("Statement run {} finished with {} of {} partitions done", run.getPeriod(),
+                        completed, run.getTotalPartitions());
+            }
+        }));
+    }
+
+
+    private YearMonth parsePeriod(String period) {
+        try {
+            return YearMonth.parse(period);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Period must look like 2026-09");
+        }
+    }
+
+    private StatementRunDTO toDTO(StatementRun run) {
+        return StatementRunDTO.builder()
+                .id(run.getId())
+                .period(run.getPeriod())
+                .status(run.getStatus())
+                .totalPartitions(run.getTotalPartitions())
+                .completedPartitions(run.getCompletedPartitions())
+                .accountsProcessed(run.getAccountsProcessed())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .build();
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,47 @@
+package com.phegon.phegonbank.statement.services;
+
+
+import com.phegon.phegonbank.aws.S3Service;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+
+// Stores statements as <period>/<accountNumber>.html and .csv, under statement.output-dir or in the S3 bucket.
+// Writes overwrite, so a partition that is run again after a crash just replaces its files
+@Component
+@RequiredArgsConstructor
+public class StatementWriter {
+
+    private final S3Service s3Service;
+
+    @Value("${statement.output:local}")
+    private String output;
+
+    @Value("${statement.output-dir:statements}")
+    private String outputDir;
+
+
+    public void write(YearMonth period, String accountNumber, String html, String csv) {
+        if ("s3".equalsIgnoreCase(output)) {
+            String prefix = "statements/" + period + "/" + accountNumber;
+            s3Service.uploadBytes(prefix + ".html", html.getBytes(StandardCharsets.UTF_8), "text/html");
+            s3Service.uploadBytes(prefix + ".csv", csv.getBytes(StandardCharsets.UTF_8), "text/csv");
+            return;
+        }
+
+        try {
+            Path dir = Files.createDirectories(Path.of(outputDir, period.toString()));
+            Files.writeString(dir.resolve(accountNumber + ".html"), html, StandardCharsets.UTF_8);
+            Files.writeString(dir.resolve(accountNumber + ".csv"), csv, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
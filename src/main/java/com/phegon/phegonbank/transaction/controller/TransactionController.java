@@ -1,13 +1,26 @@
 package com.phegon.phegonbank.transaction.controller;
 
 
+import com.phegon.phegonbank.enums.ExportFormat;
 import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchRequest;
 import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.services.IdempotencyGuard;
+import com.phegon.phegonbank.transaction.services.TransactionBatchService;
+import com.phegon.phegonbank.transaction.services.TransactionExportService;
+import com.phegon.phegonbank.transaction.services.TransactionRetryExecutor;
 import com.phegon.phegonbank.transaction.services.TransactionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -15,18 +28,78 @@ import org.springframework.web.bind.annotation.*;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final TransactionBatchService transactionBatchService;
+    private final TransactionRetryExecutor transactionRetryExecutor;
+    private final IdempotencyGuard idempotencyGuard;
+    private final TransactionExportService transactionExportService;
 
     @PostMapping
-    public ResponseEntity<Response<?>> createTransaction(@RequestBody @Valid TransactionRequest request) {
-        return ResponseEntity.ok(transactionService.createTransaction(request));
+    public ResponseEntity<Response<?>> createTransaction(
+            @RequestBody @Valid TransactionRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(transactionRetryExecutor.execute(() -> transactionService.createTransaction(request)));
+        }
+        // the guard retries itself, the key has to complete in the same transaction as the posting
+        return ResponseEntity.ok(idempotencyGuard.execute(idempotencyKey, request,
+                () -> transactionService.createTransaction(request)));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<Response<?>> createTransactions(@RequestBody @Valid TransactionBatchRequest request) {
+        Response<?> response = transactionBatchService.createTransactions(request);
+        return ResponseEntity.status(response.getStatusCode()).body(response);
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/review")
+    public ResponseEntity<Response<?>> getPendingReview(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(transactionService.getPendingReview(page, size));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/review/{id}/approve")
+    public ResponseEntity<Response<?>> approveTransaction(@PathVariable Long id) {
+        return ResponseEntity.ok(transactionRetryExecutor.execute(() -> transactionService.approveTransaction(id)));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/review/{id}/reject")
+    public ResponseEntity<Response<?>> rejectTransaction(@PathVariable Long id) {
+        return ResponseEntity.ok(transactionService.rejectTransaction(id));
     }
 
     @GetMapping("/{accountNumber}")
     public ResponseEntity<Response<?>> getTransactionsForMyAccount(
             @PathVariable String accountNumber,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
+        // cursor mode: pass cursor (empty for the first page), then each response's meta.nextCursor
+        if (cursor != null) {
+            return ResponseEntity.ok(transactionService.getTransactionsForMyAccount(accountNumber, cursor, size, includeTotal));
+        }
         return ResponseEntity.ok(transactionService.getTransactionsForMyAccount(accountNumber, page, size));
     }
+
+    @GetMapping("/{accountNumber}/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionsForMyAccount(
+            @PathVariable String accountNumber,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions-" + accountNumber + "." + exportFormat.getExtension() + "\"")
+                .body(transactionExportService.exportMyAccount(accountNumber, exportFormat, from, to));
+    }
 }
@@ -0,0 +1,25 @@
+package com.phegon.phegonbank.transaction.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchItemResult {
+
+    private int index; // position of the item in the submitted list
+
+    private TransactionStatus status;
+
+    private Long transactionId;
+
+    private String message;
+}
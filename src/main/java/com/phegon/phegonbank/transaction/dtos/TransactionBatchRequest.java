@@ -0,0 +1,22 @@
+package com.phegon.phegonbank.transaction.dtos;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.phegon.phegonbank.enums.BatchMode;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TransactionBatchRequest {
+
+    @NotEmpty(message = "At least one transaction is required")
+    @Size(max = 10000, message = "A batch can hold at most 10000 transactions")
+    private List<TransactionRequest> transactions;
+
+    private BatchMode mode = BatchMode.BEST_EFFORT;
+
+}
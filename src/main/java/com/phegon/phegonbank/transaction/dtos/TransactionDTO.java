@@ -41,4 +41,7 @@ public class TransactionDTO {
     //for transfer
     private String sourceAccount;
     private String destinationAccount;
+
+    private BigDecimal exchangeRate;
+    private BigDecimal convertedAmount;
 }
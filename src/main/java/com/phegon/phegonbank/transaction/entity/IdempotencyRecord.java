@@ -0,0 +1,52 @@
+package com.phegon.phegonbank.transaction.entity;
+
+
+import com.phegon.phegonbank.enums.IdempotencyStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Builder
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // "<user email>:<Idempotency-Key header>", so two users can't collide on the same key
+    @Column(nullable = false, unique = true, length = 200)
+    private String scopedKey;
+
+    // SHA-256 of the request, to catch a key being reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private IdempotencyStatus status;
+
+    private Integer responseStatusCode;
+    private String responseMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // when the current IN_PROGRESS claim was taken, a claim older than the lease is left by a dead instance
+    private LocalDateTime claimedAt;
+
+    // new for every claim, so an attempt whose claim was taken over can't complete or free the key
+    @Column(length = 36)
+    private String claimToken;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -16,7 +16,7 @@ import java.time.LocalDateTime;
 @Entity
 @Data
 @Builder
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = @Index(name = "idx_transactions_destination_account", columnList = "destinationAccount"))
 @AllArgsConstructor
 @NoArgsConstructor
 public class Transaction {
@@ -47,6 +47,19 @@ public class Transaction {
     //for transfer
     private String sourceAccount;
     private String destinationAccount;
+
+    // cross-currency transfers only: source -> destination rate used, and what the destination was credited
+    @Column(precision = 19, scale = 10)
+    private BigDecimal exchangeRate;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal convertedAmount;
+
+
+    // what the destination of a transfer receives, in its own currency
+    public BigDecimal creditedAmount() {
+        return convertedAmount != null ? convertedAmount : amount;
+    }
 }
 
 
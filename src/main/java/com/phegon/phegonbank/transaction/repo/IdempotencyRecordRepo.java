@@ -0,0 +1,51 @@
+package com.phegon.phegonbank.transaction.repo;
+
+import com.phegon.phegonbank.transaction.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepo extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopedKey(String scopedKey);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.scopedKey = :scopedKey")
+    void deleteByScopedKey(String scopedKey);
+
+    // frees a key whose posting failed, unless another attempt has taken the claim over since
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.scopedKey = :scopedKey AND r.claimToken = :claimToken " +
+            "AND r.status = com.phegon.phegonbank.enums.IdempotencyStatus.IN_PROGRESS")
+    int releaseClaim(String scopedKey, String claimToken);
+
+    // takes over an IN_PROGRESS claim whose lease ran out, at most one caller gets 1 back
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.claimedAt = :now, r.claimToken = :claimToken WHERE r.scopedKey = :scopedKey " +
+            "AND r.status = com.phegon.phegonbank.enums.IdempotencyStatus.IN_PROGRESS " +
+            "AND COALESCE(r.claimedAt, r.createdAt) < :staleBefore")
+    int retakeStaleClaim(String scopedKey, String claimToken, LocalDateTime now, LocalDateTime staleBefore);
+
+    // Runs inside the posting's own transaction, so the key is COMPLETED exactly when the posting commits.
+    // 0 means the claim was taken over meanwhile and the posting has to roll back
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.phegon.phegonbank.enums.IdempotencyStatus.COMPLETED, " +
+            "r.responseStatusCode = :statusCode, r.responseMessage = :message " +
+            "WHERE r.scopedKey = :scopedKey AND r.claimToken = :claimToken " +
+            "AND r.status = com.phegon.phegonbank.enums.IdempotencyStatus.IN_PROGRESS")
+    int complete(String scopedKey, String claimToken, int statusCode, String message);
+
+    // deletes in slices so the sweep never holds a long lock on the table
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpired(LocalDateTime now, int limit);
+}
@@ -1,27 +1,58 @@
 package com.phegon.phegonbank.transaction.repo;
 
+import com.phegon.phegonbank.enums.TransactionStatus;
 import com.phegon.phegonbank.transaction.entity.Transaction;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface TransactionRepo extends JpaRepository<Transaction, Long> {
 
 
-    @Query("SELECT t FROM Transaction t WHERE t.account.accountNumber = :accountNumber " +
-            "OR (t.transactionType = 'TRANSFER' AND t.destinationAccount = :accountNumber) " +
-            "ORDER BY t.transactionDate DESC")
-    Page<Transaction> findByAccount_AccountNumber(String accountNumber, Pageable pageable);
+    // Account history goes through ledger_entries: every posting leaves exactly one leg per account it touched,
+    // so "sent or received by this account" becomes a single range on the (account_id, posted_at, transaction_id)
+    // index, and transactions are then read by primary key. No OR across columns, no scan
+
+    @Query(value = "SELECT t FROM LedgerEntry e JOIN e.transaction t WHERE e.account.id = :accountId " +
+            "ORDER BY e.postedAt DESC, e.transaction.id DESC",
+            countQuery = "SELECT COUNT(e) FROM LedgerEntry e WHERE e.account.id = :accountId")
+    Page<Transaction> findHistory(Long accountId, Pageable pageable);
+
+    @Query("SELECT t FROM LedgerEntry e JOIN e.transaction t WHERE e.account.accountNumber = :accountNumber " +
+            "ORDER BY e.postedAt DESC, e.transaction.id DESC")
+    List<Transaction> findHistory(String accountNumber);
+
+    // keyset page: seeks past (postedAt, transaction id) on the same index. Pageable only supplies the LIMIT
+    @Query("SELECT t FROM LedgerEntry e JOIN e.transaction t WHERE e.account.id = :accountId " +
+            "AND (e.postedAt < :date OR (e.postedAt = :date AND e.transaction.id < :id)) " +
+            "ORDER BY e.postedAt DESC, e.transaction.id DESC")
+    List<Transaction> findHistoryBefore(Long accountId, LocalDateTime date, Long id, Pageable limit);
+
+    @Query("SELECT COUNT(e) FROM LedgerEntry e WHERE e.account.id = :accountId")
+    long countHistory(Long accountId);
+
 
+    // held postings have no ledger legs yet, so history adds them from here. There are only ever a few per account
+    @Query("SELECT t FROM Transaction t WHERE t.account.id = :accountId " +
+            "AND t.status = com.phegon.phegonbank.enums.TransactionStatus.PENDING ORDER BY t.transactionDate DESC, t.id DESC")
+    List<Transaction> findPending(Long accountId);
 
     @Query("SELECT t FROM Transaction t WHERE t.account.accountNumber = :accountNumber " +
-            "OR (t.transactionType = 'TRANSFER' AND t.destinationAccount = :accountNumber) " +
-            "ORDER BY t.transactionDate DESC")
-    List<Transaction> findByAccount_AccountNumber(String accountNumber);
+            "AND t.status = com.phegon.phegonbank.enums.TransactionStatus.PENDING ORDER BY t.transactionDate DESC, t.id DESC")
+    List<Transaction> findPending(String accountNumber);
 
+    // review queue, oldest first
+    Page<Transaction> findByStatusOrderByIdAsc(TransactionStatus status, Pageable pageable);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaction t WHERE t.id = :id")
+    Optional<Transaction> findByIdForUpdate(Long id);
 
 }
@@ -0,0 +1,256 @@
+package com.phegon.phegonbank.transaction.services;
+
+
+import com.phegon.phegonbank.enums.IdempotencyStatus;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.IdempotencyRecord;
+import com.phegon.phegonbank.transaction.repo.IdempotencyRecordRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Makes POST /api/transactions safe to retry with an Idempotency-Key header. Recent keys are answered from
+ * an in-memory LRU, older ones from the idempotency_keys table, and neither path touches the accounts.
+ * The key is marked COMPLETED in the posting's own database transaction, so a key is never left
+ * IN_PROGRESS for a posting that did commit.
+ */
+@Component
+@Slf4j
+public class IdempotencyGuard {
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int LOCK_STRIPES = 256;
+    private static final int SWEEP_BATCH = 1000;
+
+    private final IdempotencyRecordRepo idempotencyRecordRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRetryExecutor transactionRetryExecutor;
+    private final long ttlHours;
+    private final long claimTimeoutSeconds;
+
+    private final Map<String, IdempotencyRecord> recent;
+
+    // duplicates of the same key queue on the same stripe; unrelated keys almost never share one
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public IdempotencyGuard(IdempotencyRecordRepo idempotencyRecordRepo,
+                            TransactionTemplate transactionTemplate,
+                            TransactionRetryExecutor transactionRetryExecutor,
+                            @Value("${transaction.idempotency.ttl-hours:24}") long ttlHours,
+                            @Value("${transaction.idempotency.claim-timeout-seconds:60}") long claimTimeoutSeconds,
+                            @Value("${transaction.idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyRecordRepo = idempotencyRecordRepo;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionRetryExecutor = transactionRetryExecutor;
+        this.ttlHours = ttlHours;
+        this.claimTimeoutSeconds = claimTimeoutSeconds;
+
+        // access-ordered LinkedHashMap = LRU, the eldest entry goes once we are over capacity
+        this.recent = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+
+    // posting must join the caller's transaction (plain @Transactional), optimistic retries are done here
+    public Response<?> execute(String idempotencyKey, TransactionRequest request, Supplier<Response<?>> posting) {
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String scopedKey = SecurityContextHolder.getContext().getAuthentication().getName() + ":" + idempotencyKey;
+        String requestHash = hash(request);
+
+        IdempotencyRecord cached = cached(scopedKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        ReentrantLock lock = locks[Math.floorMod(scopedKey.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            // a duplicate we were queued behind may have just finished
+            cached = cached(scopedKey);
+            if (cached != null) {
+                return replay(cached, requestHash);
+            }
+
+            Optional<IdempotencyRecord> stored = idempotencyRecordRepo.findByScopedKey(scopedKey);
+
+            if (stored.isPresent() && stored.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+                // past its TTL but not swept yet, the key is free again
+                idempotencyRecordRepo.deleteByScopedKey(scopedKey);
+                stored = Optional.empty();
+            }
+
+            IdempotencyRecord claim;
+            if (stored.isPresent() && stored.get().getStatus() == IdempotencyStatus.IN_PROGRESS) {
+                claim = retake(stored.get(), requestHash);
+            } else if (stored.isPresent()) {
+                remember(stored.get());
+                return replay(stored.get(), requestHash);
+            } else {
+                claim = claim(scopedKey, requestHash);
+            }
+
+            Response<?> response;
+            try {
+                response = transactionRetryExecutor.execute(() -> transactionTemplate.execute(status -> {
+                    Response<?> posted = posting.get();
+                    complete(claim, posted);
+                    return posted;
+                }));
+            } catch (RuntimeException e) {
+                // nothing was posted, free the key so the client can try again
+                idempotencyRecordRepo.releaseClaim(scopedKey, claim.getClaimToken());
+                throw e;
+            }
+
+            claim.setStatus(IdempotencyStatus.COMPLETED);
+            claim.setResponseStatusCode(response.getStatusCode());
+            claim.setResponseMessage(response.getMessage());
+            remember(claim);
+
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    @Scheduled(fixedDelayString = "${transaction.idempotency.sweep-interval-ms:600000}")
+    public void sweepExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted;
+        int total = 0;
+        do {
+            deleted = idempotencyRecordRepo.deleteExpired(now, SWEEP_BATCH);
+            total += deleted;
+        } while (deleted == SWEEP_BATCH);
+
+        synchronized (recent) {
+            recent.values().removeIf(record -> record.getExpiresAt().isBefore(now));
+        }
+
+        if (total > 0) {
+            log.info("Swept {} expired idempotency keys", total);
+        }
+    }
+
+
+    // the row is committed before the posting starts, so other instances see the key as taken
+    private IdempotencyRecord claim(String scopedKey, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            return idempotencyRecordRepo.saveAndFlush(IdempotencyRecord.builder()
+                    .scopedKey(scopedKey)
+                    .requestHash(requestHash)
+                    .status(IdempotencyStatus.IN_PROGRESS)
+                    .createdAt(now)
+                    .claimedAt(now)
+                    .claimToken(UUID.randomUUID().toString())
+                    .expiresAt(now.plusHours(ttlHours))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // another instance claimed the same key between our lookup and insert
+            throw new TransactionConflictException("A request with this Idempotency-Key is still being processed");
+        }
+    }
+
+    // An IN_PROGRESS claim is normally another instance still posting. Once its lease has run out the
+    // instance died mid-request, and since the key completes in the posting's transaction nothing was posted
+    // for it, so the key is taken over instead of answering 409 until the TTL. Should the old attempt still be
+    // running, its complete() finds the new token and rolls back, or it already holds the row and the retake
+    // waits for it and then finds the key COMPLETED
+    private IdempotencyRecord retake(IdempotencyRecord stored, String requestHash) {
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String claimToken = UUID.randomUUID().toString();
+        if (idempotencyRecordRepo.retakeStaleClaim(stored.getScopedKey(), claimToken, now, now.minusSeconds(claimTimeoutSeconds)) == 0) {
+            // claimed by another instance that hasn't finished yet
+            throw new TransactionConflictException("A request with this Idempotency-Key is still being processed");
+        }
+        log.warn("Took over the stale idempotency claim for {}", stored.getScopedKey());
+        stored.setClaimedAt(now);
+        stored.setClaimToken(claimToken);
+        return stored;
+    }
+
+    private void complete(IdempotencyRecord claim, Response<?> response) {
+        if (idempotencyRecordRepo.complete(claim.getScopedKey(), claim.getClaimToken(),
+                response.getStatusCode(), response.getMessage()) == 0) {
+            // another attempt took the key over, roll this posting back
+            throw new TransactionConflictException("A request with this Idempotency-Key is still being processed");
+        }
+    }
+
+    private Response<?> replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        return Response.builder()
+                .statusCode(record.getResponseStatusCode())
+                .message(record.getResponseMessage())
+                .build();
+    }
+
+    private IdempotencyRecord cached(String scopedKey) {
+        synchronized (recent) {
+            IdempotencyRecord record = recent.get(scopedKey);
+            if (record != null && record.getExpiresAt().isBefore(LocalDateTime.now())) {
+                recent.remove(scopedKey);
+                return null;
+            }
+            return record;
+        }
+    }
+
+    private void remember(IdempotencyRecord record) {
+        synchronized (recent) {
+            recent.put(record.getScopedKey(), record);
+        }
+    }
+
+    private String hash(TransactionRequest request) {
+        // 100 and 100.00 are the same request
+        String amount = request.getAmount() == null ? null : request.getAmount().stripTrailingZeros().toPlainString();
+        String canonical = request.getTransactionType() + "|" + amount + "|" + request.getAccountNumber()
+                + "|" + request.getDestinationAccountNumber() + "|" + request.getDescription();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
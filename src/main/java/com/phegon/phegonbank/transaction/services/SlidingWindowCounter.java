@@ -0,0 +1,57 @@
+package com.phegon.phegonbank.transaction.services;
+
+import java.util.Arrays;
+
+/**
+ * Sum of the values added over the last `buckets * bucketMillis` ms, kept in a ring of fixed-size time buckets.
+ * Plain long arrays, no allocation after construction. Not thread safe, callers lock around it.
+ */
+final class SlidingWindowCounter {
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final long[] values;
+    private final long[] bucketNumbers; // which time bucket each slot currently holds
+
+    SlidingWindowCounter(int buckets, long bucketMillis) {
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.values = new long[buckets];
+        this.bucketNumbers = new long[buckets];
+        // all slots start out older than any window
+        Arrays.fill(bucketNumbers, -buckets);
+    }
+
+    long sum(long nowMillis) {
+        long current = nowMillis / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (current - bucketNumbers[i] < buckets) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+
+    void add(long atMillis, long value) {
+        long bucket = atMillis / bucketMillis;
+        int slot = (int) (bucket % buckets);
+        if (bucketNumbers[slot] != bucket) {
+            if (bucketNumbers[slot] > bucket) {
+                return; // older than the window, nothing to count
+            }
+            bucketNumbers[slot] = bucket;
+            values[slot] = 0;
+        }
+        values[slot] += value;
+    }
+
+    // takes back an add(), unless its bucket has already rotated out
+    void remove(long atMillis, long value) {
+        long bucket = atMillis / bucketMillis;
+        int slot = (int) (bucket % buckets);
+        if (bucketNumbers[slot] == bucket) {
+            values[slot] -= value;
+        }
+    }
+}
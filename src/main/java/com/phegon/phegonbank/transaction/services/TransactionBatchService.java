@@ -0,0 +1,11 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchItemResult;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchRequest;
+
+import java.util.List;
+
+public interface TransactionBatchService {
+    Response<List<TransactionBatchItemResult>> createTransactions(TransactionBatchRequest batchRequest);
+}
@@ -0,0 +1,372 @@
+package com.phegon.phegonbank.transaction.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.BatchMode;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import com.phegon.phegonbank.exceptions.InsufficientBalanceException;
+import com.phegon.phegonbank.exceptions.InvalidTransactionException;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import com.phegon.phegonbank.fx.services.FxRateService;
+import com.phegon.phegonbank.ledger.entity.LedgerEntry;
+import com.phegon.phegonbank.ledger.services.LedgerService;
+import com.phegon.phegonbank.money.Money;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchItemResult;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchRequest;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Posts many transactions per database transaction. Each chunk locks all the accounts it touches in account
+ * number order (an ALL_OR_NOTHING batch locks the accounts of the whole batch before its first chunk), applies
+ * the items in memory, then writes the balances and the transaction rows as JDBC batches.
+ * Items go through VelocityGuard.checkBulk, which only counts them unless bulk postings are configured to be
+ * checked like single ones; a held item is saved as PENDING.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionBatchServiceImpl implements TransactionBatchService {
+
+    // transactions.id is IDENTITY, which stops Hibernate from batching inserts, so the rows go through JDBC
+    private static final String INSERT_TRANSACTION = "INSERT INTO transactions " +
+            "(amount, transaction_type, transaction_date, description, status, account_id, source_account, destination_account, " +
+            "exchange_rate, converted_amount) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final AccountRepo accountRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionNotifier transactionNotifier;
+    private final HotAccountService hotAccountService;
+    private final LedgerService ledgerService;
+    private final FxRateService fxRateService;
+    private final VelocityGuard velocityGuard;
+
+    @Value("${transaction.batch.chunk-size:200}")
+    private int chunkSize;
+
+
+    // alerts are built right after the item is applied, so each one shows the balance after that item
+    private record Posted(int index, Transaction transaction, Account destination, List<PendingEmail> alerts) {
+    }
+
+    // aborts an ALL_OR_NOTHING batch, the TransactionTemplate rolls back on it
+    private static class BatchItemFailedException extends RuntimeException {
+        private final int index;
+
+        BatchItemFailedException(int index, String message) {
+            super(message);
+            this.index = index;
+        }
+    }
+
+
+    @Override
+    public Response<List<TransactionBatchItemResult>> createTransactions(TransactionBatchRequest batchRequest) {
+
+        List<TransactionRequest> items = batchRequest.getTransactions();
+        // an explicit "mode": null overrides the field default
+        BatchMode mode = batchRequest.getMode() == null ? BatchMode.BEST_EFFORT : batchRequest.getMode();
+        TransactionBatchItemResult[] results = new TransactionBatchItemResult[items.size()];
+
+        if (mode == BatchMode.ALL_OR_NOTHING) {
+            postAllOrNothing(items, results);
+        } else {
+            postBestEffort(items, results);
+        }
+
+        long succeeded = Arrays.stream(results).filter(r -> r.getStatus() == TransactionStatus.SUCCESS).count();
+        long pending = Arrays.stream(results).filter(r -> r.getStatus() == TransactionStatus.PENDING).count();
+        boolean rejected = mode == BatchMode.ALL_OR_NOTHING && succeeded < items.size();
+
+        return Response.<List<TransactionBatchItemResult>>builder()
+                .statusCode(rejected ? HttpStatus.BAD_REQUEST.value() : HttpStatus.OK.value())
+                .message(rejected ? "Batch rejected, no transaction was posted" : "Batch processed")
+                .data(Arrays.asList(results))
+                .meta(Map.of(
+                        "mode", mode.name(),
+                        "succeeded", succeeded,
+                        "pending", pending,
+                        "failed", items.size() - succeeded - pending
+                ))
+                .build();
+    }
+
+
+    private void postAllOrNothing(List<TransactionRequest> items, TransactionBatchItemResult[] results) {
+        try {
+            // every account is locked up front in one sorted pass, locking chunk by chunk would take the locks
+            // out of order and deadlock against single postings. Chunks are still flushed one by one to keep
+            // the JDBC batches small
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, Account> accounts = lockAccounts(items, 0, items.size());
+                for (int from = 0; from < items.size(); from += chunkSize) {
+                    postChunk(items, from, Math.min(from + chunkSize, items.size()), accounts, results, true);
+                }
+            });
+        } catch (BatchItemFailedException e) {
+            for (int i = 0; i < results.length; i++) {
+                String message = i == e.index ? e.getMessage() : "Rolled back, item " + e.index + " failed";
+                results[i] = failed(i, message);
+            }
+        } catch (PessimisticLockingFailureException e) {
+            log.warn("Batch could not lock its accounts: {}", e.getMessage());
+            throw new TransactionConflictException("Accounts are busy, please retry the batch");
+        }
+    }
+
+    private void postBestEffort(List<TransactionRequest> items, TransactionBatchItemResult[] results) {
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, items.size());
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        postChunk(items, start, end, lockAccounts(items, start, end), results, false));
+            } catch (PessimisticLockingFailureException e) {
+                log.warn("Batch chunk {}-{} could not lock its accounts: {}", start, end, e.getMessage());
+                for (int i = start; i < end; i++) {
+                    results[i] = failed(i, "Accounts are busy, please retry");
+                }
+            }
+        }
+    }
+
+
+    // Locks every distinct account of items[from, to) in account number order. Large sets go out in
+    // consecutive slices of the sorted set, so the order holds across queries too
+    private Map<String, Account> lockAccounts(List<TransactionRequest> items, int from, int to) {
+
+        TreeSet<String> accountNumbers = new TreeSet<>();
+        for (int i = from; i < to; i++) {
+            TransactionRequest item = items.get(i);
+            if (item.getAccountNumber() != null) accountNumbers.add(item.getAccountNumber());
+            if (item.getDestinationAccountNumber() != null) accountNumbers.add(item.getDestinationAccountNumber());
+        }
+
+        List<String> sorted = new ArrayList<>(accountNumbers);
+        Map<String, Account> accounts = new HashMap<>(sorted.size() * 2);
+        for (int i = 0; i < sorted.size(); i += chunkSize) {
+            for (Account account : accountRepo.findAllForUpdate(sorted.subList(i, Math.min(i + chunkSize, sorted.size())))) {
+                accounts.put(account.getAccountNumber(), account);
+            }
+        }
+        return accounts;
+    }
+
+    private void postChunk(List<TransactionRequest> items, int from, int to, Map<String, Account> accounts,
+                                   TransactionBatchItemResult[] results, boolean abortOnFailure) {
+
+        List<Posted> posted = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            try {
+                Posted item = apply(i, items.get(i), accounts);
+                // a held item can't be part of an all-or-nothing batch, the rest would post without it
+                if (abortOnFailure && item.transaction().getStatus() == TransactionStatus.PENDING) {
+                    throw new BatchItemFailedException(i, "Transaction needs review, the batch cannot be posted as a whole");
+                }
+                posted.add(item);
+            } catch (NotFoundException | InsufficientBalanceException | InvalidTransactionException e) {
+                if (abortOnFailure) {
+                    throw new BatchItemFailedException(i, e.getMessage());
+                }
+                results[i] = failed(i, e.getMessage());
+            }
+        }
+
+        // dirty accounts go out as batched UPDATEs (hibernate.jdbc.batch_size), then the transaction and ledger inserts
+        accountRepo.flush();
+        List<Long> ids = insertTransactions(posted);
+
+        List<LedgerEntry> legs = new ArrayList<>(posted.size() * 2);
+        for (int p = 0; p < posted.size(); p++) {
+            Posted item = posted.get(p);
+            item.transaction().setId(ids.get(p));
+            boolean held = item.transaction().getStatus() == TransactionStatus.PENDING;
+            if (!held) {
+                legs.addAll(ledgerService.legsFor(item.transaction(), item.destination()));
+            }
+            results[item.index()] = TransactionBatchItemResult.builder()
+                    .index(item.index())
+                    .status(item.transaction().getStatus())
+                    .transactionId(ids.get(p))
+                    .message(held ? "Transaction is pending review" : null)
+                    .build();
+        }
+        ledgerService.insert(legs);
+
+        // alerts go to the outbox with the chunk, a rolled back chunk leaves none behind
+        transactionNotifier.dispatch(alertsFor(posted));
+    }
+
+
+    // Applies one item against the locked accounts. Checks happen before any balance is touched,
+    // so a rejected item leaves the chunk untouched. The velocity check comes last, an item that fails
+    // a balance check must not count against the account's limits
+    private Posted apply(int index, TransactionRequest item, Map<String, Account> accounts) {
+
+        if (item.getTransactionType() == null) {
+            throw new InvalidTransactionException("Transaction type is required");
+        }
+        if (item.getAmount() == null || item.getAmount().signum() <= 0) {
+            throw new InvalidTransactionException("Amount must be greater than zero");
+        }
+        if (!Money.hasMinorUnitsOnly(item.getAmount())) {
+            throw new InvalidTransactionException("Amount cannot have more than " + Money.SCALE + " decimal places");
+        }
+
+        Account account = activeAccount(accounts, item.getAccountNumber(), "Account not found");
+
+        Transaction transaction = Transaction.builder()
+                .amount(item.getAmount())
+                .transactionType(item.getTransactionType())
+                .transactionDate(LocalDateTime.now())
+                .description(item.getDescription())
+                .status(TransactionStatus.SUCCESS)
+                .account(account)
+                .build();
+
+        Account destination = null;
+
+        switch (item.getTransactionType()) {
+            case DEPOSIT -> account.balance(account.balance().plus(Money.of(item.getAmount(), account.getCurrency())));
+            case WITHDRAWAL -> {
+                Money amount = Money.of(item.getAmount(), account.getCurrency());
+                if (!hasFunds(account, amount)) {
+                    throw new InsufficientBalanceException("Insufficient balance");
+                }
+                if (velocityGuard.checkBulk(item)) {
+                    return holdForReview(index, transaction);
+                }
+                account.balance(account.balance().minus(amount));
+            }
+            case TRANSFER -> {
+                if (account.getAccountNumber().equals(item.getDestinationAccountNumber())) {
+                    throw new InvalidTransactionException("Source and destination account cannot be the same");
+                }
+                destination = activeAccount(accounts, item.getDestinationAccountNumber(), "Destination Account not found");
+                BigDecimal credited = fxRateService.convertTransfer(transaction, account.getCurrency(), destination.getCurrency());
+                Money debited = Money.of(item.getAmount(), account.getCurrency());
+                if (!hasFunds(account, debited)) {
+                    throw new InsufficientBalanceException("Insufficient balance in source account");
+                }
+                transaction.setSourceAccount(account.getAccountNumber());
+                transaction.setDestinationAccount(destination.getAccountNumber());
+                if (velocityGuard.checkBulk(item)) {
+                    return holdForReview(index, transaction);
+                }
+                account.balance(account.balance().minus(debited));
+                destination.balance(destination.balance().plus(Money.of(credited, destination.getCurrency())));
+            }
+            default -> throw new InvalidTransactionException("Invalid transaction type");
+        }
+
+        return new Posted(index, transaction, destination, transactionNotifier.alertsFor(transaction, destination));
+    }
+
+    // saved as PENDING without legs or alerts, the review flow posts it later
+    private Posted holdForReview(int index, Transaction transaction) {
+        transaction.setStatus(TransactionStatus.PENDING);
+        return new Posted(index, transaction, null, List.of());
+    }
+
+    // hot accounts keep part of their balance in slots, swept into the locked row only when it runs short
+    private boolean hasFunds(Account account, Money amount) {
+        if (!account.balance().isLessThan(amount)) {
+            return true;
+        }
+        return hotAccountService.sweepIntoBalance(account) && !account.balance().isLessThan(amount);
+    }
+
+    private Account activeAccount(Map<String, Account> accounts, String accountNumber, String notFoundMessage) {
+        Account account = accountNumber == null ? null : accounts.get(accountNumber);
+        if (account == null) {
+            throw new NotFoundException(notFoundMessage);
+        }
+        if (account.getStatus() != AccountStatus.ACTIVE) {
+            throw new InvalidTransactionException("Account " + accountNumber + " is not active");
+        }
+        return account;
+    }
+
+
+    private List<Long> insertTransactions(List<Posted> posted) {
+        if (posted.isEmpty()) {
+            return List.of();
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_TRANSACTION, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaction txn = posted.get(i).transaction();
+                        ps.setBigDecimal(1, txn.getAmount());
+                        ps.setString(2, txn.getTransactionType().name());
+                        ps.setObject(3, txn.getTransactionDate());
+                        ps.setString(4, txn.getDescription());
+                        ps.setString(5, txn.getStatus().name());
+                        ps.setLong(6, txn.getAccount().getId());
+                        ps.setString(7, txn.getSourceAccount());
+                        ps.setString(8, txn.getDestinationAccount());
+                        ps.setBigDecimal(9, txn.getExchangeRate());
+                        ps.setBigDecimal(10, txn.getConvertedAmount());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return posted.size();
+                    }
+                },
+                keyHolder);
+
+        return keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.values().iterator().next()).longValue())
+                .toList();
+    }
+
+    private List<PendingEmail> alertsFor(List<Posted> posted) {
+        List<PendingEmail> alerts = new ArrayList<>();
+        for (Posted item : posted) {
+            alerts.addAll(item.alerts());
+        }
+        return alerts;
+    }
+
+    private TransactionBatchItemResult failed(int index, String message) {
+        return TransactionBatchItemResult.builder()
+                .index(index)
+                .status(TransactionStatus.FAILED)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.enums.ExportFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+public interface TransactionExportService {
+    StreamingResponseBody exportMyAccount(String accountNumber, ExportFormat format, LocalDateTime from, LocalDateTime to);
+    StreamingResponseBody exportAccount(String accountNumber, ExportFormat format, LocalDateTime from, LocalDateTime to);
+}
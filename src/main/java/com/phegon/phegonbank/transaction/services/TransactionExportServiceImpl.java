@@ -0,0 +1,210 @@
+package com.phegon.phegonbank.transaction.services;
+
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.auth_users.services.UserService;
+import com.phegon.phegonbank.config.AsyncRequestTimeouts;
+import com.phegon.phegonbank.config.ExportPermits;
+import com.phegon.phegonbank.csv.Csv;
+import com.phegon.phegonbank.enums.ExportFormat;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams an account's transactions straight from a JDBC cursor to the response. Rows are written as they are
+ * read and never collected, mapped to entities or kept in a persistence context, so heap use doesn't grow
+ * with the size of the export. Every export holds an {@link ExportPermits} permit, and with it a connection,
+ * from before the response starts until the stream ends.
+ */
+@Service
+@Slf4j
+public class TransactionExportServiceImpl implements TransactionExportService {
+
+    // same access path as the account history: the account's ledger legs, then transactions by primary key.
+    // The leg's amount is in this account's currency, which matters for the credited side of a cross-currency transfer
+    private static final String EXPORT_QUERY = "SELECT t.id, t.transaction_date, t.transaction_type, e.direction, e.amount, " +
+            "t.status, t.source_account, t.destination_account, t.description " +
+            "FROM ledger_entries e JOIN transactions t ON t.id = e.transaction_id WHERE e.account_id = ?";
+
+    // postings held for review have no legs yet; they follow the posted rows with an empty direction
+    private static final String PENDING_QUERY = "SELECT t.id, t.transaction_date, t.transaction_type, NULL, t.amount, " +
+            "t.status, t.source_account, t.destination_account, t.description " +
+            "FROM transactions t WHERE t.account_id = ? AND t.status = 'PENDING'";
+
+    private static final String CSV_HEADER = "id,date,type,direction,amount,status,sourceAccount,destinationAccount,description";
+
+    private final AccountRepo accountRepo;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ExportPermits exportPermits;
+    private final long timeoutMs;
+
+    public TransactionExportServiceImpl(AccountRepo accountRepo, UserService userService, ObjectMapper objectMapper,
+                                        DataSource dataSource, ExportPermits exportPermits,
+                                        @Value("${transaction.export.fetch-size:-2147483648}") int fetchSize,
+                                        @Value("${transaction.export.timeout-ms:3600000}") long timeoutMs) {
+        this.accountRepo = accountRepo;
+        this.timeoutMs = timeoutMs;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.exportPermits = exportPermits;
+
+        // MySQL Connector/J only streams a result set row by row with fetch size Integer.MIN_VALUE,
+        // any other value without useCursorFetch buffers the whole result in memory
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+    }
+
+
+    @Override
+    public StreamingResponseBody exportMyAccount(String accountNumber, ExportFormat format, LocalDateTime from, LocalDateTime to) {
+
+        User user = userService.getCurrentLoggedInUser();
+        Account account = findAccount(accountNumber);
+
+        if (!account.getUser().getId().equals(user.getId())) {
+            throw new BadRequestException("Account does not belong to the authenticated user");
+        }
+        return stream(account, format, from, to);
+    }
+
+    @Override
+    public StreamingResponseBody exportAccount(String accountNumber, ExportFormat format, LocalDateTime from, LocalDateTime to) {
+        return stream(findAccount(accountNumber), format, from, to);
+    }
+
+
+    // checks run on the request thread above; the body below runs later, on the async thread writing the response
+    private StreamingResponseBody stream(Account account, ExportFormat format, LocalDateTime from, LocalDateTime to) {
+
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new BadRequestException("'from' must not be after 'to'");
+        }
+
+        List<Object> args = new ArrayList<>(3);
+        args.add(account.getId());
+        if (from != null) {
+            args.add(from);
+        }
+        if (to != null) {
+            args.add(to);
+        }
+        String sql = EXPORT_QUERY + range("e.posted_at", from, to) + " ORDER BY e.posted_at, e.transaction_id";
+        String pendingSql = PENDING_QUERY + range("t.transaction_date", from, to) + " ORDER BY t.transaction_date, t.id";
+
+        Long accountId = account.getId();
+
+        // taken last, a request rejected by the checks above must not hold one. Released when the body ends
+        ExportPermits.Permit permit = exportPermits.acquire();
+
+        // a full history can take a while to download, only exports get the long timeout
+        AsyncRequestTimeouts.set(timeoutMs);
+
+        return out -> {
+            if (!permit.start()) {
+                return; // the request was over before the export got a thread
+            }
+            try {
+                write(out, format, sql, pendingSql, args, accountId);
+            } finally {
+                permit.release();
+            }
+        };
+    }
+
+    private void write(OutputStream out, ExportFormat format, String sql, String pendingSql, List<Object> args,
+                       Long accountId) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long[] rows = {0};
+        try {
+            RowCallbackHandler handler = rs -> {
+                writeRow(writer, format, rs);
+                rows[0]++;
+            };
+            streamingJdbcTemplate.query(sql, handler, args.toArray());
+            streamingJdbcTemplate.query(pendingSql, handler, args.toArray());
+        } catch (UncheckedIOException e) {
+            // client went away mid-download
+            log.warn("Export for account {} aborted after {} rows: {}", accountId, rows[0], e.getMessage());
+            return;
+        }
+
+        writer.flush();
+        log.info("Exported {} transactions for account {} as {}", rows[0], accountId, format);
+    }
+
+    private void writeRow(Writer writer, ExportFormat format, ResultSet rs) throws SQLException {
+        try {
+            if (format == ExportFormat.CSV) {
+                writer.write(Long.toString(rs.getLong(1)));
+                writer.write(',');
+                writer.write(timestamp(rs.getTimestamp(2)));
+                for (int column = 3; column <= 9; column++) {
+                    writer.write(',');
+                    writer.write(Csv.value(rs.getString(column)));
+                }
+            } else {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", rs.getLong(1));
+                row.put("date", timestamp(rs.getTimestamp(2)));
+                row.put("type", rs.getString(3));
+                row.put("direction", rs.getString(4));
+                row.put("amount", rs.getBigDecimal(5));
+                row.put("status", rs.getString(6));
+                row.put("sourceAccount", rs.getString(7));
+                row.put("destinationAccount", rs.getString(8));
+                row.put("description", rs.getString(9));
+                writer.write(objectMapper.writeValueAsString(row));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String range(String column, LocalDateTime from, LocalDateTime to) {
+        return (from != null ? " AND " + column + " >= ?" : "") + (to != null ? " AND " + column + " < ?" : "");
+    }
+
+    private String timestamp(Timestamp timestamp) {
+        return timestamp == null ? "" : timestamp.toLocalDateTime().toString();
+    }
+
+    private Account findAccount(String accountNumber) {
+        return accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException("Account not found"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.services.HotAccountService;
+import com.phegon.phegonbank.auth_users.entity.User;
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.notification.dtos.NotificationDTO;
+import com.phegon.phegonbank.notification.dtos.PendingEmail;
+import com.phegon.phegonbank.notification.services.NotificationOutboxService;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the debit/credit alert emails for a posted transaction and writes them to the notification outbox
+ * inside the posting transaction. Nothing is sent for a posting that rolls back, and sending happens later
+ * in NotificationOutboxDispatcher, off the posting path.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionNotifier {
+
+    private final NotificationOutboxService notificationOutboxService;
+    private final HotAccountService hotAccountService;
+
+
+    public void notify(Transaction tnx, Account destination) {
+        dispatch(alertsFor(tnx, destination));
+    }
+
+    // must run inside the posting transaction
+    public void dispatch(List<PendingEmail> alerts) {
+        notificationOutboxService.enqueue(alerts);
+    }
+
+    public List<PendingEmail> alertsFor(Transaction tnx, Account destination) {
+
+        List<PendingEmail> alerts = new ArrayList<>(2);
+        Account account = tnx.getAccount();
+
+        if (tnx.getTransactionType() == TransactionType.DEPOSIT) {
+            alerts.add(alert(tnx, account, tnx.getAmount(), "Credit Alert", "credit-alert"));
+
+        } else if (tnx.getTransactionType() == TransactionType.WITHDRAWAL) {
+            alerts.add(alert(tnx, account, tnx.getAmount(), "Debit Alert", "debit-alert"));
+
+        } else if (tnx.getTransactionType() == TransactionType.TRANSFER) {
+            alerts.add(alert(tnx, account, tnx.getAmount(), "Debit Alert", "debit-alert"));
+
+            // Receiver CREDIT alert, in the receiver's currency
+            alerts.add(alert(tnx, destination, tnx.creditedAmount(), "Credit Alert", "credit-alert"));
+        }
+        return alerts;
+    }
+
+
+    private PendingEmail alert(Transaction tnx, Account account, BigDecimal amount, String subject, String template) {
+
+        User user = account.getUser();
+
+        // balance is captured now, so the alert shows the balance right after this posting
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("name", user.getFirstName());
+        templateVariables.put("amount", amount);
+        templateVariables.put("accountNumber", account.getAccountNumber());
+        templateVariables.put("date", tnx.getTransactionDate());
+        templateVariables.put("balance", hotAccountService.totalBalance(account));
+
+        NotificationDTO notification = NotificationDTO.builder()
+                .recipient(user.getEmail())
+                .subject(subject)
+                .templateName(template)
+                .templateVariables(templateVariables)
+                .build();
+
+        return new PendingEmail(notification, user);
+    }
+}
@@ -0,0 +1,71 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a posting when it lost an optimistic-lock race. It has to sit outside the @Transactional
+ * boundary, so every attempt starts a fresh transaction and reads fresh balances.
+ */
+@Component
+@Slf4j
+public class TransactionRetryExecutor {
+
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public TransactionRetryExecutor(MeterRegistry meterRegistry,
+                                    @Value("${transaction.retry.max-attempts:4}") int maxAttempts,
+                                    @Value("${transaction.retry.initial-backoff-ms:10}") long initialBackoffMs,
+                                    @Value("${transaction.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.retries = Counter.builder("transaction.retries")
+                .description("Postings re-run after an optimistic lock conflict")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("transaction.retries.exhausted")
+                .description("Postings that still conflicted after the last attempt")
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> posting) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return posting.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("Posting still conflicting after {} attempts", attempt);
+                    throw new TransactionConflictException("Account is busy, please retry the transaction");
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    // exponential backoff with full jitter, so the writers that collided don't collide again on the next round
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long sleepMs = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionConflictException("Interrupted while retrying the transaction");
+        }
+    }
+}
@@ -3,10 +3,18 @@ package com.phegon.phegonbank.transaction.services;
 import com.phegon.phegonbank.res.Response;
 import com.phegon.phegonbank.transaction.dtos.TransactionDTO;
 import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.Transaction;
 
 import java.util.List;
 
 public interface TransactionService {
     Response<?>createTransaction(TransactionRequest transactionRequest);
+    // posts and returns the saved transaction, joining the caller's DB transaction if there is one
+    Transaction postTransaction(TransactionRequest transactionRequest);
     Response<List<TransactionDTO>> getTransactionsForMyAccount(String accountNumber, int page, int size);
+    Response<List<TransactionDTO>> getTransactionsForMyAccount(String accountNumber, String cursor, int size, boolean includeTotal);
+    // postings held by the velocity rules (REVIEW)
+    Response<List<TransactionDTO>> getPendingReview(int page, int size);
+    Response<TransactionDTO> approveTransaction(Long id);
+    Response<TransactionDTO> rejectTransaction(Long id);
 }
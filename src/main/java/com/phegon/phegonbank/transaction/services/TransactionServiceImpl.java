@@ -3,17 +3,24 @@ package com.phegon.phegonbank.transaction.services;
 
 import com.phegon.phegonbank.account.entity.Account;
 import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
 import com.phegon.phegonbank.auth_users.entity.User;
 import com.phegon.phegonbank.auth_users.services.UserService;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.ConcurrencyMode;
+import com.phegon.phegonbank.enums.Currency;
 import com.phegon.phegonbank.enums.TransactionStatus;
 import com.phegon.phegonbank.enums.TransactionType;
 import com.phegon.phegonbank.exceptions.BadRequestException;
 import com.phegon.phegonbank.exceptions.InsufficientBalanceException;
 import com.phegon.phegonbank.exceptions.InvalidTransactionException;
 import com.phegon.phegonbank.exceptions.NotFoundException;
-import com.phegon.phegonbank.notification.dtos.NotificationDTO;
-import com.phegon.phegonbank.notification.services.NotificationService;
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import com.phegon.phegonbank.fx.services.FxRateService;
+import com.phegon.phegonbank.ledger.services.LedgerService;
+import com.phegon.phegonbank.money.Money;
 import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionCursor;
 import com.phegon.phegonbank.transaction.dtos.TransactionDTO;
 import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
 import com.phegon.phegonbank.transaction.entity.Transaction;
@@ -21,17 +28,24 @@ import com.phegon.phegonbank.transaction.repo.TransactionRepo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -40,64 +54,171 @@ public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepo transactionRepo;
     private final AccountRepo accountRepo;
-    private final NotificationService notificationService;
+    private final TransactionNotifier transactionNotifier;
+    private final HotAccountService hotAccountService;
+    private final LedgerService ledgerService;
+    private final VelocityGuard velocityGuard;
+    private final FxRateService fxRateService;
     private final UserService userService;
     private final ModelMapper modelMapper;
 
+    @Value("${transaction.concurrency-mode:ATOMIC}")
+    private ConcurrencyMode concurrencyMode;
+
 
     @Override
     @Transactional
     public Response<?> createTransaction(TransactionRequest transactionRequest) {
 
+        Transaction transaction = postTransaction(transactionRequest);
+
+        if (transaction.getStatus() == TransactionStatus.PENDING) {
+            return Response.builder()
+                    .statusCode(HttpStatus.ACCEPTED.value())
+                    .message("Transaction is pending review")
+                    .build();
+        }
+
+        return Response.builder()
+                .statusCode(200)
+                .message("Transaction successful")
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public Transaction postTransaction(TransactionRequest transactionRequest) {
+
+        if (transactionRequest.getAmount() == null || transactionRequest.getAmount().signum() <= 0) {
+            throw new InvalidTransactionException("Amount must be greater than zero");
+        }
+        if (!Money.hasMinorUnitsOnly(transactionRequest.getAmount())) {
+            throw new InvalidTransactionException("Amount cannot have more than " + Money.SCALE + " decimal places");
+        }
+
         Transaction transaction = new Transaction();
 
         transaction.setTransactionType(transactionRequest.getTransactionType());
         transaction.setAmount(transactionRequest.getAmount());
         transaction.setDescription(transactionRequest.getDescription());
 
-        switch (transactionRequest.getTransactionType()) {
-            case DEPOSIT -> handleDeposit(transactionRequest, transaction);
-            case WITHDRAWAL -> handleWithdrawal(transactionRequest, transaction);
-            case TRANSFER -> handleTransfer(transactionRequest, transaction);
-            default -> throw new InvalidTransactionException("Invalid transaction type");
+        // in-memory check, before any row is locked
+        if (velocityGuard.check(transactionRequest)) {
+            return holdForReview(transactionRequest, transaction);
         }
 
-        transaction.setStatus(TransactionStatus.SUCCESS);
-        Transaction savedTxn = transactionRepo.save(transaction);
+        return post(transactionRequest, transaction);
+    }
 
-        //send notification out
-        sendTransactionNotifications(savedTxn);
 
+    @Override
+    public Response<List<TransactionDTO>> getPendingReview(int page, int size) {
 
-        return Response.builder()
-                .statusCode(200)
-                .message("Transaction successful")
+        Page<Transaction> pending = transactionRepo.findByStatusOrderByIdAsc(TransactionStatus.PENDING, PageRequest.of(page, size));
+
+        return Response.<List<TransactionDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Transactions pending review retrieved")
+                .data(pending.getContent().stream()
+                        .map(transaction -> modelMapper.map(transaction, TransactionDTO.class))
+                        .toList())
+                .meta(Map.of(
+                        "currentPage", pending.getNumber(),
+                        "totalItems", pending.getTotalElements(),
+                        "totalPages", pending.getTotalPages(),
+                        "pageSize", pending.getSize()
+                ))
                 .build();
+    }
 
+    // Posts a held transaction as it was requested, without the velocity rules. If it can't be posted any more
+    // (funds gone, account closed) the error is returned and it stays PENDING until it is rejected
+    @Override
+    @Transactional
+    public Response<TransactionDTO> approveTransaction(Long id) {
 
-    }
+        Transaction transaction = lockPending(id);
+
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(transaction.getTransactionType());
+        request.setAmount(transaction.getAmount());
+        request.setAccountNumber(transaction.getAccount().getAccountNumber());
+        request.setDestinationAccountNumber(transaction.getDestinationAccount());
+        request.setDescription(transaction.getDescription());
 
+        // posted as of now, days that already have balance snapshots must not change
+        transaction.setTransactionDate(LocalDateTime.now());
+        Transaction posted = post(request, transaction);
+        log.info("Held transaction {} approved and posted", id);
+
+        return Response.<TransactionDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Transaction approved")
+                .data(modelMapper.map(posted, TransactionDTO.class))
+                .build();
+    }
 
     @Override
     @Transactional
-    public Response<List<TransactionDTO>> getTransactionsForMyAccount(String accountNumber, int page, int size) {
+    public Response<TransactionDTO> rejectTransaction(Long id) {
 
-        // Get the currently logged-in user
-        User user = userService.getCurrentLoggedInUser();
+        Transaction transaction = lockPending(id);
+        transaction.setStatus(TransactionStatus.FAILED);
+        Transaction rejected = transactionRepo.save(transaction);
+        log.info("Held transaction {} rejected", id);
 
-        // Find the account by its number
-        Account account = accountRepo.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new NotFoundException("Account not found"));
+        return Response.<TransactionDTO>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Transaction rejected")
+                .data(modelMapper.map(rejected, TransactionDTO.class))
+                .build();
+    }
 
-        //make sure he account belongs to the user. an extra security check
-        if (!account.getUser().getId().equals(user.getId())) {
-            throw new BadRequestException("Account does not belong to the authenticated user");
+
+    private Transaction post(TransactionRequest transactionRequest, Transaction transaction) {
+
+        Account destination = null;
+
+        try {
+            switch (transactionRequest.getTransactionType()) {
+                case DEPOSIT -> handleDeposit(transactionRequest, transaction);
+                case WITHDRAWAL -> handleWithdrawal(transactionRequest, transaction);
+                case TRANSFER -> destination = handleTransfer(transactionRequest, transaction);
+                default -> throw new InvalidTransactionException("Invalid transaction type");
+            }
+        } catch (PessimisticLockingFailureException e) {
+            // lock wait timed out or we were picked as deadlock victim. The whole posting rolls back
+            log.warn("Could not lock account for {}: {}", transactionRequest.getAccountNumber(), e.getMessage());
+            throw new TransactionConflictException("Account is busy, please retry the transaction");
         }
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("transactionDate").descending());
-        Page<Transaction> txns = transactionRepo.findByAccount_AccountNumber(accountNumber, pageable);
+        transaction.setStatus(TransactionStatus.SUCCESS);
+        Transaction savedTxn = transactionRepo.save(transaction);
 
-        List<TransactionDTO> transactionDTOS = txns.getContent().stream()
+        // balanced debit/credit legs, same DB transaction as the balance change
+        ledgerService.record(savedTxn, destination);
+
+        //send notification out
+        transactionNotifier.notify(savedTxn, destination);
+
+        return savedTxn;
+    }
+
+
+    @Override
+    @Transactional
+    public Response<List<TransactionDTO>> getTransactionsForMyAccount(String accountNumber, int page, int size) {
+
+        Account account = myAccount(accountNumber);
+
+        // newest first, the order is part of the query
+        Pageable pageable = PageRequest.of(page, size);
+        Page<Transaction> txns = transactionRepo.findHistory(account.getId(), pageable);
+
+        // postings held for review have no ledger legs, they head the first page
+        List<Transaction> pending = transactionRepo.findPending(account.getId());
+
+        List<TransactionDTO> transactionDTOS = Stream.concat(page == 0 ? pending.stream() : Stream.empty(), txns.getContent().stream())
                 .map(transaction -> modelMapper.map(transaction, TransactionDTO.class))
                 .toList();
 
@@ -107,7 +228,7 @@ public class TransactionServiceImpl implements TransactionService {
                 .data(transactionDTOS)
                 .meta(Map.of(
                         "currentPage", txns.getNumber(),
-                        "totalItems", txns.getTotalElements(),
+                        "totalItems", txns.getTotalElements() + pending.size(),
                         "totalPages", txns.getTotalPages(),
                         "pageSize", txns.getSize()
                 ))
@@ -116,153 +237,258 @@ public class TransactionServiceImpl implements TransactionService {
 
     }
 
+    @Override
+    @Transactional
+    public Response<List<TransactionDTO>> getTransactionsForMyAccount(String accountNumber, String cursor, int size, boolean includeTotal) {
 
-    private void handleDeposit(TransactionRequest request, Transaction transaction) {
+        Account account = myAccount(accountNumber);
+        TransactionCursor after = TransactionCursor.decode(cursor);
 
-        Account account = accountRepo.findByAccountNumber(request.getAccountNumber())
-                .orElseThrow(() -> new NotFoundException("Account not found"));
+        // one extra row tells us whether there is a next page
+        List<Transaction> page = transactionRepo.findHistoryBefore(account.getId(), after.transactionDate(), after.id(),
+                PageRequest.of(0, size + 1));
 
-        account.setBalance(account.getBalance().add(request.getAmount()));
-        transaction.setAccount(account);
-        accountRepo.save(account);
-    }
+        boolean hasMore = page.size() > size;
+        List<Transaction> txns = hasMore ? page.subList(0, size) : page;
 
+        // postings held for review have no ledger legs, they head the first page
+        boolean firstPage = after == TransactionCursor.START;
+        List<Transaction> pending = firstPage || includeTotal ? transactionRepo.findPending(account.getId()) : List.of();
 
-    private void handleWithdrawal(TransactionRequest request, Transaction transaction) {
-
-        Account account = accountRepo.findByAccountNumber(request.getAccountNumber())
-                .orElseThrow(() -> new NotFoundException("Account not found"));
+        List<TransactionDTO> transactionDTOS = Stream.concat(firstPage ? pending.stream() : Stream.empty(), txns.stream())
+                .map(transaction -> modelMapper.map(transaction, TransactionDTO.class))
+                .toList();
 
-        if (account.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new InsufficientBalanceException("Insufficient balance");
+        HashMap<String, Serializable> meta = new HashMap<>();
+        meta.put("pageSize", size);
+        meta.put("hasMore", hasMore);
+        if (hasMore) {
+            meta.put("nextCursor", TransactionCursor.after(txns.get(txns.size() - 1)).encode());
+        }
+        if (includeTotal) {
+            meta.put("totalItems", transactionRepo.countHistory(account.getId()) + pending.size());
         }
 
-        account.setBalance(account.getBalance().subtract(request.getAmount()));
-        transaction.setAccount(account);
-        accountRepo.save(account);
+        return Response.<List<TransactionDTO>>builder()
+                .statusCode(HttpStatus.OK.value())
+                .message("Transactions retrieved")
+                .data(transactionDTOS)
+                .meta(meta)
+                .build();
     }
 
-    private void handleTransfer(TransactionRequest request, Transaction transaction) {
 
-        Account sourceAccount = accountRepo.findByAccountNumber(request.getAccountNumber())
-                .orElseThrow(() -> new NotFoundException("Account not found"));
+    private Account myAccount(String accountNumber) {
 
-        Account destination = accountRepo.findByAccountNumber(request.getDestinationAccountNumber())
-                .orElseThrow(() -> new NotFoundException("Destination Account not found"));
+        // Get the currently logged-in user
+        User user = userService.getCurrentLoggedInUser();
 
-        if (sourceAccount.getBalance().compareTo(request.getAmount()) < 0) {
-            throw new InsufficientBalanceException("Insufficient balance in source account");
+        // Find the account by its number
+        Account account = accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException("Account not found"));
 
+        //make sure he account belongs to the user. an extra security check
+        if (!account.getUser().getId().equals(user.getId())) {
+            throw new BadRequestException("Account does not belong to the authenticated user");
         }
+        return account;
+    }
 
-        // Deduct from source
-        sourceAccount.setBalance(sourceAccount.getBalance().subtract(request.getAmount()));
-        accountRepo.save(sourceAccount);
 
+    private Transaction lockPending(Long id) {
+        Transaction transaction = transactionRepo.findByIdForUpdate(id)
+                .orElseThrow(() -> new NotFoundException("Transaction not found"));
+        if (transaction.getStatus() != TransactionStatus.PENDING) {
+            throw new BadRequestException("Transaction is not pending review");
+        }
+        return transaction;
+    }
 
-        // Add to destination
-        destination.setBalance(destination.getBalance().add(request.getAmount()));
-        accountRepo.save(destination);
+    // recorded as PENDING without touching any balance, so it stays out of the ledger and sends no alert until approved
+    private Transaction holdForReview(TransactionRequest request, Transaction transaction) {
 
-        transaction.setAccount(sourceAccount);
-        transaction.setSourceAccount(sourceAccount.getAccountNumber());
-        transaction.setDestinationAccount(destination.getAccountNumber());
+        transaction.setAccount(loadAccount(request.getAccountNumber()));
+        if (request.getTransactionType() == TransactionType.TRANSFER) {
+            transaction.setSourceAccount(request.getAccountNumber());
+            transaction.setDestinationAccount(request.getDestinationAccountNumber());
+        }
+        transaction.setStatus(TransactionStatus.PENDING);
+        return transactionRepo.save(transaction);
     }
 
 
-    private void sendTransactionNotifications(Transaction tnx) {
+    private void handleDeposit(TransactionRequest request, Transaction transaction) {
 
-        User user = tnx.getAccount().getUser();
-        String subject;
-        String template;
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            Account account = loadActiveAccount(request.getAccountNumber(), "Account not found");
+            account.balance(account.balance().plus(Money.of(request.getAmount(), account.getCurrency())));
+            transaction.setAccount(accountRepo.saveAndFlush(account));
+            return;
+        }
 
-        Map<String, Object> templateVariables = new HashMap<>();
+        if (!credit(request.getAccountNumber(), request.getAmount())) {
+            throw rejectedPosting(request.getAccountNumber(), "Account not found", false);
+        }
 
-        templateVariables.put("name", user.getFirstName());
-        templateVariables.put("amount", tnx.getAmount());
-        templateVariables.put("accountNumber", tnx.getAccount().getAccountNumber());
-        templateVariables.put("date", tnx.getTransactionDate());
-        templateVariables.put("balance", tnx.getAccount().getBalance());
+        // read back after the update so the alert shows the new balance
+        transaction.setAccount(loadAccount(request.getAccountNumber()));
+    }
 
-        if (tnx.getTransactionType() == TransactionType.DEPOSIT) {
-            subject = "Credit Alert";
-            template = "credit-alert";
 
-            NotificationDTO notificationEmailToSendOut = NotificationDTO.builder()
-                    .recipient(user.getEmail())
-                    .subject(subject)
-                    .templateName(template)
-                    .templateVariables(templateVariables)
-                    .build();
-            notificationService.sendEmail(notificationEmailToSendOut, user);
+    private void handleWithdrawal(TransactionRequest request, Transaction transaction) {
 
-        } else if (tnx.getTransactionType() == TransactionType.WITHDRAWAL) {
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            Account account = loadActiveAccount(request.getAccountNumber(), "Account not found");
+            Money amount = Money.of(request.getAmount(), account.getCurrency());
+            if (!hasFunds(account, amount)) {
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+            account.balance(account.balance().minus(amount));
+            transaction.setAccount(accountRepo.saveAndFlush(account));
+            return;
+        }
 
-            subject = "Debit Alert";
-            template = "debit-alert";
+        if (!debit(request.getAccountNumber(), request.getAmount())) {
+            throw rejectedPosting(request.getAccountNumber(), "Account not found", true);
+        }
 
-            NotificationDTO notificationEmailToSendOut = NotificationDTO.builder()
-                    .recipient(user.getEmail())
-                    .subject(subject)
-                    .templateName(template)
-                    .templateVariables(templateVariables)
-                    .build();
+        transaction.setAccount(loadAccount(request.getAccountNumber()));
+    }
 
-            notificationService.sendEmail(notificationEmailToSendOut, user);
-        } else if (tnx.getTransactionType() == TransactionType.TRANSFER) {
+    private Account handleTransfer(TransactionRequest request, Transaction transaction) {
 
-            subject = "Debit Alert";
-            template = "debit-alert";
+        String sourceNumber = request.getAccountNumber();
+        String destinationNumber = request.getDestinationAccountNumber();
 
+        if (destinationNumber == null || sourceNumber.equals(destinationNumber)) {
+            throw new InvalidTransactionException("Source and destination account cannot be the same");
+        }
 
-            NotificationDTO notificationEmailToSendOut = NotificationDTO.builder()
-                    .recipient(user.getEmail())
-                    .subject(subject)
-                    .templateName(template)
-                    .templateVariables(templateVariables)
-                    .build();
+        if (concurrencyMode == ConcurrencyMode.OPTIMISTIC) {
+            return handleTransferOptimistic(request, transaction);
+        }
 
-            notificationService.sendEmail(notificationEmailToSendOut, user);
+        // currencies never change, so an unlocked read is enough to work out what the destination gets.
+        // A missing account is reported by its UPDATE below
+        Map<String, Currency> currencies = new HashMap<>();
+        for (Object[] row : accountRepo.findCurrencies(List.of(sourceNumber, destinationNumber))) {
+            currencies.put((String) row[0], (Currency) row[1]);
+        }
+        BigDecimal credited = fxRateService.convertTransfer(transaction, currencies.get(sourceNumber), currencies.get(destinationNumber));
+
+        // Touch both rows in account number order, so A->B and B->A running at the same time
+        // queue up behind each other instead of deadlocking. If the debit fails after the
+        // credit went through, the exception rolls the credit back with the rest of the transaction
+        if (sourceNumber.compareTo(destinationNumber) < 0) {
+            debitSource(request);
+            creditDestination(request, credited);
+        } else {
+            creditDestination(request, credited);
+            debitSource(request);
+        }
 
+        Map<String, Account> accounts = accountRepo.findByAccountNumberIn(List.of(sourceNumber, destinationNumber))
+                .stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
 
-            // Receiver CREDIT alert
-            Account destination = accountRepo.findByAccountNumber(tnx.getDestinationAccount())
-                    .orElseThrow(() -> new NotFoundException("Destination account not found"));
+        Account sourceAccount = accounts.get(sourceNumber);
+        Account destination = accounts.get(destinationNumber);
 
+        transaction.setAccount(sourceAccount);
+        transaction.setSourceAccount(sourceAccount.getAccountNumber());
+        transaction.setDestinationAccount(destination.getAccountNumber());
+        return destination;
+    }
 
-            User receiver = destination.getUser();
+    // No locks are taken: the @Version check at flush fails if either account changed since we read it,
+    // and TransactionRetryExecutor runs the whole posting again
+    private Account handleTransferOptimistic(TransactionRequest request, Transaction transaction) {
 
+        Account sourceAccount = loadActiveAccount(request.getAccountNumber(), "Account not found");
+        Account destination = loadActiveAccount(request.getDestinationAccountNumber(), "Destination Account not found");
 
-            Map<String, Object> recvVars = new HashMap<>();
-            recvVars.put("name", receiver.getFirstName());
-            recvVars.put("amount", tnx.getAmount());
-            recvVars.put("accountNumber", destination.getAccountNumber());
-            recvVars.put("date", tnx.getTransactionDate());
-            recvVars.put("balance", destination.getBalance());
+        BigDecimal credited = fxRateService.convertTransfer(transaction, sourceAccount.getCurrency(), destination.getCurrency());
 
+        Money debited = Money.of(request.getAmount(), sourceAccount.getCurrency());
+        if (!hasFunds(sourceAccount, debited)) {
+            throw new InsufficientBalanceException("Insufficient balance in source account");
+        }
 
-            NotificationDTO notificationEmailToSendOutToReveiver = NotificationDTO.builder()
-                    .recipient(receiver.getEmail())
-                    .subject("Credit Alert")
-                    .templateName("credit-alert")
-                    .templateVariables(recvVars)
-                    .build();
+        sourceAccount.balance(sourceAccount.balance().minus(debited));
+        destination.balance(destination.balance().plus(Money.of(credited, destination.getCurrency())));
+        accountRepo.saveAllAndFlush(List.of(sourceAccount, destination));
 
-            notificationService.sendEmail(notificationEmailToSendOutToReveiver, user);
-        }
+        transaction.setAccount(sourceAccount);
+        transaction.setSourceAccount(sourceAccount.getAccountNumber());
+        transaction.setDestinationAccount(destination.getAccountNumber());
+        return destination;
     }
 
+    private void debitSource(TransactionRequest request) {
+        if (!debit(request.getAccountNumber(), request.getAmount())) {
+            throw rejectedPosting(request.getAccountNumber(), "Account not found", true);
+        }
+    }
 
-}
+    private void creditDestination(TransactionRequest request, BigDecimal amount) {
+        if (!credit(request.getDestinationAccountNumber(), amount)) {
+            throw rejectedPosting(request.getDestinationAccountNumber(), "Destination Account not found", false);
+        }
+    }
 
+    // Hot accounts take credits on a random balance slot, everyone else on the accounts row
+    private boolean credit(String accountNumber, BigDecimal amount) {
+        return hotAccountService.credit(accountNumber, amount) || accountRepo.credit(accountNumber, amount) == 1;
+    }
 
+    // A hot account's credits pile up in its slots, so when its row runs short we sweep them in and try once more
+    private boolean debit(String accountNumber, BigDecimal amount) {
+        if (accountRepo.debitIfSufficient(accountNumber, amount) == 1) {
+            return true;
+        }
+        return hotAccountService.sweepIntoBalance(accountNumber)
+                && accountRepo.debitIfSufficient(accountNumber, amount) == 1;
+    }
 
+    private boolean hasFunds(Account account, Money amount) {
+        if (!account.balance().isLessThan(amount)) {
+            return true;
+        }
+        return hotAccountService.sweepIntoBalance(account) && !account.balance().isLessThan(amount);
+    }
 
+    private Account loadActiveAccount(String accountNumber, String notFoundMessage) {
+        Account account = accountRepo.findByAccountNumberIn(List.of(accountNumber)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException(notFoundMessage));
 
+        if (account.getStatus() != AccountStatus.ACTIVE) {
+            throw new InvalidTransactionException("Account " + accountNumber + " is not active");
+        }
+        return account;
+    }
 
+    private Account loadAccount(String accountNumber) {
+        return accountRepo.findByAccountNumberIn(List.of(accountNumber)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Account not found"));
+    }
 
 
+    // The conditional update touched no row. Only on this (rare) path do we read the account to tell the caller why
+    private RuntimeException rejectedPosting(String accountNumber, String notFoundMessage, boolean debit) {
 
+        Account account = accountRepo.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new NotFoundException(notFoundMessage));
 
+        if (account.getStatus() != AccountStatus.ACTIVE) {
+            return new InvalidTransactionException("Account " + accountNumber + " is not active");
+        }
+        if (debit) {
+            return new InsufficientBalanceException("Insufficient balance");
+        }
+        return new InvalidTransactionException("Transaction could not be posted");
+    }
 
 
+}
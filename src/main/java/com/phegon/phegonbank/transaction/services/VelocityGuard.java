@@ -0,0 +1,332 @@
+package com.phegon.phegonbank.transaction.services;
+
+
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.enums.VelocityAction;
+import com.phegon.phegonbank.exceptions.InvalidTransactionException;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account velocity rules on outgoing postings (withdrawals and transfers out), checked before any balance
+ * is touched:
+ *  - at most max-per-minute outgoing postings in any minute
+ *  - at most max-amount-per-hour going out in any hour
+ *  - a transfer above new-destination-threshold to an account this one hasn't paid before
+ *
+ * Batch and payroll items are bulk postings the account owner submitted as a whole, so by default they skip
+ * the rules (a payroll file would otherwise land mostly in the review queue) and are only counted, see
+ * checkBulk. transaction.velocity.exempt-bulk=false checks every item like a single posting instead.
+ *
+ * Everything is answered from memory. Each account has two ring-buffer counters, dropped once it has been idle
+ * for an hour, and a small set of known destinations that expire after known-destination-days, both seeded from
+ * the ledger on startup. The counts are per instance, so behind N instances an
+ * account can get up to N times the limits unless it is routed to the same one.
+ */
+@Component
+@Slf4j
+public class VelocityGuard {
+
+    private static final String RECENT_OUTGOING = "SELECT a.account_number, le.amount, le.posted_at FROM ledger_entries le " +
+            "JOIN accounts a ON a.id = le.account_id WHERE le.posted_at >= ? AND le.direction = 'DEBIT'";
+
+    private static final String RECENT_PAYEES = "SELECT t.source_account, t.destination_account, MAX(le.posted_at) FROM ledger_entries le " +
+            "JOIN transactions t ON t.id = le.transaction_id " +
+            "WHERE le.posted_at >= ? AND le.direction = 'CREDIT' AND le.account_id IS NOT NULL AND t.transaction_type = 'TRANSFER' " +
+            "GROUP BY t.source_account, t.destination_account";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+    private final VelocityAction action;
+    private final int maxPerMinute;
+    private final long maxAmountPerHour;         // minor units
+    private final long newDestinationThreshold;  // minor units
+    private final int knownDestinations;
+    private final int knownDestinationDays;
+    private final boolean exemptBulk;
+
+    private final Counter rejected;
+    private final Counter held;
+
+    private final ConcurrentHashMap<String, AccountVelocity> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, KnownPayees> payees = new ConcurrentHashMap<>();
+
+    public VelocityGuard(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                         @Value("${transaction.velocity.enabled:true}") boolean enabled,
+                         @Value("${transaction.velocity.action:REVIEW}") VelocityAction action,
+                         @Value("${transaction.velocity.max-per-minute:10}") int maxPerMinute,
+                         @Value("${transaction.velocity.max-amount-per-hour:10000}") BigDecimal maxAmountPerHour,
+                         @Value("${transaction.velocity.new-destination-threshold:1000}") BigDecimal newDestinationThreshold,
+                         @Value("${transaction.velocity.known-destinations:16}") int knownDestinations,
+                         @Value("${transaction.velocity.known-destination-days:90}") int knownDestinationDays,
+                         @Value("${transaction.velocity.exempt-bulk:true}") boolean exemptBulk) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.action = action;
+        this.maxPerMinute = maxPerMinute;
+        this.maxAmountPerHour = minorUnits(maxAmountPerHour);
+        this.newDestinationThreshold = minorUnits(newDestinationThreshold);
+        this.knownDestinations = knownDestinations;
+        this.knownDestinationDays = knownDestinationDays;
+        this.exemptBulk = exemptBulk;
+        this.rejected = Counter.builder("transaction.velocity.rejected")
+                .description("Postings rejected by a velocity rule")
+                .register(meterRegistry);
+        this.held = Counter.builder("transaction.velocity.held")
+                .description("Postings held as PENDING by a velocity rule")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Returns true when the posting must be held for review instead of posted, throws when it must be rejected.
+     * An allowed posting is counted straight away, so concurrent postings see each other, and uncounted again
+     * if its DB transaction rolls back.
+     */
+    public boolean check(TransactionRequest request) {
+
+        TransactionType type = request.getTransactionType();
+        if (!enabled || (type != TransactionType.WITHDRAWAL && type != TransactionType.TRANSFER)) {
+            return false;
+        }
+
+        long amount = minorUnits(request.getAmount());
+        long now = System.currentTimeMillis();
+        long payee = type == TransactionType.TRANSFER ? fingerprint(request.getDestinationAccountNumber()) : 0;
+
+        AccountVelocity velocity = accounts.computeIfAbsent(request.getAccountNumber(), k -> new AccountVelocity());
+        KnownPayees known = payee == 0 ? null : payees.get(request.getAccountNumber());
+        String violation;
+
+        synchronized (velocity) {
+            velocity.lastActivity = now;
+
+            if (velocity.perMinute.sum(now) >= maxPerMinute) {
+                violation = "more than " + maxPerMinute + " outgoing transactions in a minute";
+            } else if (velocity.perHour.sum(now) + amount > maxAmountPerHour) {
+                violation = "hourly outgoing limit exceeded";
+            } else if (payee != 0 && amount > newDestinationThreshold && (known == null || !known.knows(payee, knownSince(now)))) {
+                violation = "large first transfer to a new destination";
+            } else {
+                velocity.perMinute.add(now, 1);
+                velocity.perHour.add(now, amount);
+                violation = null;
+            }
+        }
+
+        if (violation == null) {
+            afterCompletion(request.getAccountNumber(), velocity, now, 1, amount, payee);
+            return false;
+        }
+
+        log.warn("Velocity rule hit on account {}: {}", request.getAccountNumber(), violation);
+        if (action == VelocityAction.REJECT) {
+            rejected.increment();
+            throw new InvalidTransactionException("Transaction blocked: " + violation);
+        }
+        held.increment();
+        return true;
+    }
+
+
+    // A batch or payroll item. When bulk postings are exempt it is never held, but its amount still counts
+    // towards the hourly window, so single postings right after a payroll see it, and its payee becomes known
+    public boolean checkBulk(TransactionRequest request) {
+
+        if (!exemptBulk) {
+            return check(request);
+        }
+        TransactionType type = request.getTransactionType();
+        if (!enabled || (type != TransactionType.WITHDRAWAL && type != TransactionType.TRANSFER)) {
+            return false;
+        }
+
+        long amount = minorUnits(request.getAmount());
+        long now = System.currentTimeMillis();
+        long payee = type == TransactionType.TRANSFER ? fingerprint(request.getDestinationAccountNumber()) : 0;
+
+        AccountVelocity velocity = accounts.computeIfAbsent(request.getAccountNumber(), k -> new AccountVelocity());
+        synchronized (velocity) {
+            velocity.lastActivity = now;
+            velocity.perHour.add(now, amount);
+        }
+        afterCompletion(request.getAccountNumber(), velocity, now, 0, amount, payee);
+        return false;
+    }
+
+
+    // loads the last hour of outgoing legs and the recent payees, so a restart doesn't reset anyone's limits
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ZoneId zone = ZoneId.systemDefault();
+
+        jdbcTemplate.query(RECENT_OUTGOING, (RowCallbackHandler) rs -> {
+            AccountVelocity velocity = accounts.computeIfAbsent(rs.getString(1), k -> new AccountVelocity());
+            long at = rs.getTimestamp(3).toLocalDateTime().atZone(zone).toInstant().toEpochMilli();
+            synchronized (velocity) {
+                velocity.perMinute.add(at, 1);
+                velocity.perHour.add(at, minorUnits(rs.getBigDecimal(2)));
+                velocity.lastActivity = Math.max(velocity.lastActivity, at);
+            }
+        }, Timestamp.valueOf(now.minusHours(1)));
+
+        jdbcTemplate.query(RECENT_PAYEES, (RowCallbackHandler) rs -> {
+            long at = rs.getTimestamp(3).toLocalDateTime().atZone(zone).toInstant().toEpochMilli();
+            remember(rs.getString(1), fingerprint(rs.getString(2)), at);
+        }, Timestamp.valueOf(now.minusDays(knownDestinationDays)));
+
+        log.info("Velocity counters seeded for {} accounts, known payees for {}", accounts.size(), payees.size());
+    }
+
+    // an account idle for over an hour has empty windows; payees go once the last one is older than the window
+    @Scheduled(fixedDelayString = "${transaction.velocity.sweep-interval-ms:600000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long idleBefore = now - 3_600_000L;
+        long knownSince = knownSince(now);
+        accounts.values().removeIf(velocity -> velocity.lastActivity < idleBefore);
+        payees.values().removeIf(known -> known.lastSeen() < knownSince);
+    }
+
+
+    private void afterCompletion(String accountNumber, AccountVelocity velocity, long at, int count, long amount, long payee) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remember(accountNumber, payee, at);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    remember(accountNumber, payee, at);
+                    return;
+                }
+                synchronized (velocity) {
+                    velocity.perMinute.remove(at, count);
+                    velocity.perHour.remove(at, amount);
+                }
+            }
+        });
+    }
+
+    // a payee only becomes known once money actually reached it
+    private void remember(String accountNumber, long payee, long at) {
+        if (payee != 0) {
+            payees.computeIfAbsent(accountNumber, k -> new KnownPayees(knownDestinations)).remember(payee, at);
+        }
+    }
+
+    private long knownSince(long now) {
+        return now - knownDestinationDays * 86_400_000L;
+    }
+
+    private static long minorUnits(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.UP).longValue();
+    }
+
+    // 64-bit FNV-1a of the account number, never 0 (0 = no payee)
+    private static long fingerprint(String accountNumber) {
+        if (accountNumber == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            hash ^= accountNumber.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+
+    // guarded by its own monitor
+    private static final class AccountVelocity {
+
+        final SlidingWindowCounter perMinute = new SlidingWindowCounter(60, 1_000);   // 1s buckets
+        final SlidingWindowCounter perHour = new SlidingWindowCounter(60, 60_000);    // 1 min buckets
+
+        long lastActivity;
+    }
+
+    // the account's most recent payees with when each was last paid, the oldest is overwritten once full
+    private static final class KnownPayees {
+
+        final long[] payees;
+        final long[] paidAt;
+        int count;
+
+        KnownPayees(int size) {
+            this.payees = new long[size];
+            this.paidAt = new long[size];
+        }
+
+        synchronized boolean knows(long payee, long since) {
+            for (int i = 0; i < count; i++) {
+                if (payees[i] == payee) {
+                    return paidAt[i] >= since;
+                }
+            }
+            return false;
+        }
+
+        synchronized void remember(long payee, long at) {
+            if (payees.length == 0) {
+                return;
+            }
+            int slot = -1;
+            for (int i = 0; i < count; i++) {
+                if (payees[i] == payee) {
+                    slot = i;
+                    break;
+                }
+            }
+            if (slot < 0) {
+                slot = count < payees.length ? count++ : oldest();
+                payees[slot] = payee;
+                paidAt[slot] = at;
+            } else {
+                paidAt[slot] = Math.max(paidAt[slot], at);
+            }
+        }
+
+        synchronized long lastSeen() {
+            long last = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                last = Math.max(last, paidAt[i]);
+            }
+            return last;
+        }
+
+        private int oldest() {
+            int oldest = 0;
+            for (int i = 1; i < count; i++) {
+                if (paidAt[i] < paidAt[oldest]) {
+                    oldest = i;
+                }
+            }
+            return oldest;
+        }
+    }
+}
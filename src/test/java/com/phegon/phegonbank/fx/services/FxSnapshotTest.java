@@ -0,0 +1,61 @@
+package com.phegon.phegonbank.fx.services;
+
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.fx.entity.FxRate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FxSnapshotTest {
+
+    @Test
+    void derivesTheReversePair() {
+        FxSnapshot snapshot = new FxSnapshot(List.of(rate(Currency.USD, Currency.NGN, "1500")));
+
+        assertThat(snapshot.rate(Currency.USD, Currency.NGN)).isEqualByComparingTo("1500");
+        // 1/1500 at scale 10, half even
+        assertThat(snapshot.rate(Currency.NGN, Currency.USD)).isEqualTo(new BigDecimal("0.0006666667"));
+    }
+
+    @Test
+    void storedPairWinsOverTheDerivedOne() {
+        // listed in both orders, the stored reverse must not be overwritten by 1/0.9
+        FxSnapshot snapshot = new FxSnapshot(List.of(
+                rate(Currency.USD, Currency.EUR, "0.9"),
+                rate(Currency.EUR, Currency.USD, "1.1")));
+
+        assertThat(snapshot.rate(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.9");
+        assertThat(snapshot.rate(Currency.EUR, Currency.USD)).isEqualByComparingTo("1.1");
+
+        FxSnapshot reversed = new FxSnapshot(List.of(
+                rate(Currency.EUR, Currency.USD, "1.1"),
+                rate(Currency.USD, Currency.EUR, "0.9")));
+
+        assertThat(reversed.rate(Currency.USD, Currency.EUR)).isEqualByComparingTo("0.9");
+        assertThat(reversed.rate(Currency.EUR, Currency.USD)).isEqualByComparingTo("1.1");
+    }
+
+    @Test
+    void sameCurrencyIsOne() {
+        assertThat(FxSnapshot.EMPTY.rate(Currency.EUR, Currency.EUR)).isEqualTo(BigDecimal.ONE);
+    }
+
+    @Test
+    void missingPairIsNull() {
+        FxSnapshot snapshot = new FxSnapshot(List.of(rate(Currency.USD, Currency.NGN, "1500")));
+
+        assertThat(snapshot.rate(Currency.EUR, Currency.NGN)).isNull();
+        assertThat(FxSnapshot.EMPTY.rate(Currency.USD, Currency.EUR)).isNull();
+    }
+
+    private static FxRate rate(Currency base, Currency quote, String rate) {
+        return FxRate.builder()
+                .baseCurrency(base)
+                .quoteCurrency(quote)
+                .rate(new BigDecimal(rate))
+                .build();
+    }
+}
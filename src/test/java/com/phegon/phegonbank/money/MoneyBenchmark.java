@@ -0,0 +1,106 @@
+package com.phegon.phegonbank.money;
+
+import com.phegon.phegonbank.enums.Currency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Money against the BigDecimal code it replaces, on the two shapes it is used for: posting a batch of items
+ * against a balance (check funds, then debit or credit) and summing ledger rows for a statement or reconciliation.
+ * Run with -prof gc to see the allocation rate next to the timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int ITEMS = 1000;
+
+    private BigDecimal[] amounts;
+    private long[] minorUnits;
+    private BigDecimal opening;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        amounts = new BigDecimal[ITEMS];
+        minorUnits = new long[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            minorUnits[i] = 1 + random.nextInt(500_000);
+            amounts[i] = BigDecimal.valueOf(minorUnits[i], Money.SCALE);
+        }
+        opening = new BigDecimal("100000.00");
+    }
+
+
+    @Benchmark
+    public BigDecimal postBigDecimal() {
+        BigDecimal balance = opening;
+        for (int i = 0; i < ITEMS; i++) {
+            BigDecimal amount = amounts[i];
+            if ((i & 1) == 0) {
+                balance = balance.add(amount);
+            } else if (balance.compareTo(amount) >= 0) {
+                balance = balance.subtract(amount);
+            }
+        }
+        return balance;
+    }
+
+    // what the posting path does: amounts arrive as BigDecimal and the balance is written back as one
+    @Benchmark
+    public BigDecimal postMoney() {
+        Money balance = Money.of(opening, Currency.NGN);
+        for (int i = 0; i < ITEMS; i++) {
+            Money amount = Money.of(amounts[i], Currency.NGN);
+            if ((i & 1) == 0) {
+                balance = balance.plus(amount);
+            } else if (!balance.isLessThan(amount)) {
+                balance = balance.minus(amount);
+            }
+        }
+        return balance.toBigDecimal();
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    // statements and reconciliation read minor units straight from the result set
+    @Benchmark
+    public long sumMoney() {
+        Money total = Money.zero(Currency.NGN);
+        for (long amount : minorUnits) {
+            total = total.plus(amount);
+        }
+        return total.minorUnits();
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MoneyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
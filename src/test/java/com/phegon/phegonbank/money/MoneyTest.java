@@ -0,0 +1,59 @@
+package com.phegon.phegonbank.money;
+
+import com.phegon.phegonbank.enums.Currency;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void ofConvertsToMinorUnits() {
+        assertThat(Money.of(new BigDecimal("1234.5"), Currency.NGN).minorUnits()).isEqualTo(123450);
+        assertThat(Money.of(new BigDecimal("7"), Currency.NGN).minorUnits()).isEqualTo(700);
+        assertThat(Money.of(new BigDecimal("-0.05"), Currency.NGN).minorUnits()).isEqualTo(-5);
+    }
+
+    @Test
+    void ofAcceptsTrailingZerosBeyondTwoPlaces() {
+        assertThat(Money.of(new BigDecimal("10.500"), Currency.USD).minorUnits()).isEqualTo(1050);
+        assertThat(Money.of(new BigDecimal("1E+2"), Currency.USD).minorUnits()).isEqualTo(10000);
+    }
+
+    @Test
+    void ofRejectsFractionsOfAMinorUnitInsteadOfRounding() {
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.005"), Currency.USD))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("19.999"), Currency.USD))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void appendToWritesTwoDecimalPlaces() {
+        assertThat(new Money(123450, Currency.NGN).toString()).isEqualTo("1234.50");
+        assertThat(new Money(7, Currency.NGN).toString()).isEqualTo("0.07");
+        assertThat(new Money(0, Currency.NGN).toString()).isEqualTo("0.00");
+        assertThat(new Money(-150, Currency.NGN).toString()).isEqualTo("-1.50");
+        assertThat(new Money(-5, Currency.NGN).toString()).isEqualTo("-0.05");
+    }
+
+    @Test
+    void appendToRoundTripsThroughOf() {
+        for (String amount : new String[]{"0.01", "0.10", "99.99", "-42.00", "1000000.05"}) {
+            Money money = Money.of(new BigDecimal(amount), Currency.EUR);
+            assertThat(money.appendTo(new StringBuilder()).toString()).isEqualTo(amount);
+            assertThat(money.toBigDecimal()).isEqualByComparingTo(amount);
+        }
+    }
+
+    @Test
+    void arithmeticRefusesToMixCurrencies() {
+        Money naira = new Money(100, Currency.NGN);
+        assertThat(naira.plus(new Money(50, Currency.NGN)).minorUnits()).isEqualTo(150);
+        assertThatThrownBy(() -> naira.minus(new Money(50, Currency.USD)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
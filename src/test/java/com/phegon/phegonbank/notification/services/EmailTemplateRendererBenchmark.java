@@ -0,0 +1,69 @@
+package com.phegon.phegonbank.notification.services;
+
+import com.phegon.phegonbank.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render throughput of the alert templates, through the same engine configuration and renderer the app uses.
+ * Four threads, like a burst of alerts on the notification pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class EmailTemplateRendererBenchmark {
+
+    @Param({"credit-alert", "debit-alert"})
+    private String template;
+
+    private EmailTemplateRenderer renderer;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        renderer = new EmailTemplateRenderer(new AppConfig().templateEngine(86_400_000L, 200), new SimpleMeterRegistry());
+        renderer.preload();
+
+        variables = new HashMap<>();
+        variables.put("name", "Ada");
+        variables.put("amount", new BigDecimal("1250.00"));
+        variables.put("accountNumber", "0123456789");
+        variables.put("date", LocalDateTime.of(2026, 9, 30, 14, 5));
+        variables.put("balance", new BigDecimal("48210.75"));
+    }
+
+
+    @Benchmark
+    public String render() {
+        return renderer.render(template, variables);
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmailTemplateRendererBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.phegon.phegonbank.payroll.services;
+
+import com.phegon.phegonbank.payroll.dtos.PayrollLine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayrollFileReaderTest {
+
+    private static final String SOURCE = "1000000001";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsHeaderAndBlankLines() throws IOException {
+        List<PayrollLine> lines = read(
+                "account,amount,description",
+                "2000000001,150.00,March",
+                "",
+                "2000000002,75");
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines).allMatch(PayrollLine::valid);
+        assertThat(lines.get(0).lineNumber()).isEqualTo(2);
+        assertThat(lines.get(0).amount()).isEqualByComparingTo("150.00");
+        assertThat(lines.get(0).description()).isEqualTo("March");
+        assertThat(lines.get(1).lineNumber()).isEqualTo(4);
+        assertThat(lines.get(1).description()).isNull();
+    }
+
+    @Test
+    void firstLineWithANumericAmountIsNotAHeader() throws IOException {
+        List<PayrollLine> lines = read("2000000001,10");
+
+        assertThat(lines).singleElement().satisfies(line -> {
+            assertThat(line.lineNumber()).isEqualTo(1);
+            assertThat(line.valid()).isTrue();
+        });
+    }
+
+    @Test
+    void quotedFieldsMayHoldCommasAndQuotes() throws IOException {
+        List<PayrollLine> lines = read("\"2000000001\",\"20.50\",\"Salary, March \"\"bonus\"\"\"");
+
+        assertThat(lines).singleElement().satisfies(line -> {
+            assertThat(line.valid()).isTrue();
+            assertThat(line.destinationAccount()).isEqualTo("2000000001");
+            assertThat(line.amount()).isEqualByComparingTo("20.50");
+            assertThat(line.description()).isEqualTo("Salary, March \"bonus\"");
+        });
+    }
+
+    @Test
+    void malformedLinesCarryAnErrorAndReadingGoesOn() throws IOException {
+        List<PayrollLine> lines = read(
+                "2000000001",
+                "2000000001,10,a,b",
+                "2000000001,ten",
+                ",10",
+                SOURCE + ",10",
+                "2000000001,0",
+                "2000000001,-5",
+                "2000000001,1.005",
+                "2000000001,10");
+
+        assertThat(lines).extracting(PayrollLine::error).containsExactly(
+                "Expected destinationAccountNumber,amount[,description]",
+                "Expected destinationAccountNumber,amount[,description]",
+                "Amount is not a number",
+                "Destination account is required",
+                "Destination cannot be the source account",
+                "Amount must be greater than zero",
+                "Amount must be greater than zero",
+                "Amount cannot have more than 2 decimal places",
+                null);
+        assertThat(lines).extracting(PayrollLine::lineNumber).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    void longDescriptionsAreTruncated() throws IOException {
+        List<PayrollLine> lines = read("2000000001,10," + "x".repeat(250));
+
+        assertThat(lines.get(0).description()).hasSize(200);
+    }
+
+    private List<PayrollLine> read(String... text) throws IOException {
+        Path file = dir.resolve("payroll.csv");
+        Files.write(file, List.of(text), StandardCharsets.UTF_8);
+        List<PayrollLine> lines = new ArrayList<>();
+        PayrollFileReader.read(file, SOURCE, lines::add);
+        return lines;
+    }
+}
@@ -0,0 +1,199 @@
+package com.phegon.phegonbank.payroll.services;
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
+import com.phegon.phegonbank.config.BackgroundExecutors;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.enums.JobStatus;
+import com.phegon.phegonbank.enums.VelocityAction;
+import com.phegon.phegonbank.fx.services.FxRateService;
+import com.phegon.phegonbank.ledger.services.LedgerService;
+import com.phegon.phegonbank.payroll.entity.PayrollImport;
+import com.phegon.phegonbank.payroll.repo.PayrollImportRepo;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import com.phegon.phegonbank.transaction.services.TransactionBatchServiceImpl;
+import com.phegon.phegonbank.transaction.services.TransactionNotifier;
+import com.phegon.phegonbank.transaction.services.VelocityGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// runs a whole import through the real batch posting and velocity rules, with the repositories mocked
+class PayrollImportJobTest {
+
+    private static final String SOURCE = "1000000000";
+    private static final int LINES = 1000;
+
+    @TempDir
+    Path workDir;
+
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final PayrollImportRepo payrollImportRepo = mock(PayrollImportRepo.class);
+    private final AccountRepo accountRepo = mock(AccountRepo.class);
+    private final HotAccountService hotAccountService = mock(HotAccountService.class);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    private PayrollImport payroll;
+
+    @BeforeEach
+    void setUp() {
+        account(SOURCE, "1000000.00");
+        for (int i = 1; i <= LINES; i++) {
+            account(employee(i), "0.00");
+        }
+
+        payroll = PayrollImport.builder()
+                .id(1L)
+                .sourceAccount(SOURCE)
+                .fileName("march.csv")
+                .status(JobStatus.PENDING)
+                .build();
+        when(payrollImportRepo.findById(1L)).thenReturn(Optional.of(payroll));
+        when(payrollImportRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        when(accountRepo.findByAccountNumber(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(accounts.get(invocation.<String>getArgument(0))));
+        when(accountRepo.findActiveAccountNumbers(any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().filter(accounts::containsKey).toList());
+        when(accountRepo.findAllForUpdate(any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().map(accounts::get).filter(Objects::nonNull).toList());
+        when(hotAccountService.totalBalance(any())).thenAnswer(invocation -> invocation.<Account>getArgument(0).getBalance());
+    }
+
+
+    @Test
+    void thousandLinePayrollPostsEveryLine() throws Exception {
+        PayrollImportJob job = job(velocityGuard(true));
+
+        run(job);
+
+        assertThat(payroll.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(payroll.getTotalLines()).isEqualTo(LINES);
+        assertThat(payroll.getPostedLines()).isEqualTo(LINES);
+        assertThat(payroll.getHeldLines()).isZero();
+        assertThat(payroll.getFailedLines()).isZero();
+        assertThat(accounts.get(SOURCE).getBalance()).isEqualByComparingTo("500000.00");
+        assertThat(accounts.get(employee(LINES)).getBalance()).isEqualByComparingTo("500.00");
+
+        List<String> report = Files.readAllLines(job.reportPath(1L), StandardCharsets.UTF_8);
+        assertThat(report).hasSize(LINES + 1);
+        assertThat(report.subList(1, report.size())).allMatch(row -> row.contains(",SUCCESS,"));
+    }
+
+    @Test
+    void checkingBulkItemsLikeSinglePostingsHoldsMostOfThePayroll() throws Exception {
+        run(job(velocityGuard(false)));
+
+        // max-per-minute lets the first 10 through, the rest wait for review
+        assertThat(payroll.getStatus()).isEqualTo(JobStatus.COMPLETED);
+        assertThat(payroll.getPostedLines()).isEqualTo(10);
+        assertThat(payroll.getHeldLines()).isEqualTo(LINES - 10);
+    }
+
+
+    private void run(PayrollImportJob job) throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>(LINES + 1);
+        lines.add("account,amount,description");
+        for (int i = 1; i <= LINES; i++) {
+            lines.add(employee(i) + ",500.00,Salary March");
+        }
+        Files.write(job.uploadPath(1L), lines, StandardCharsets.UTF_8);
+
+        job.submit(1L);
+        worker.shutdown();
+        assertThat(worker.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private PayrollImportJob job(VelocityGuard velocityGuard) {
+        BackgroundExecutors backgroundExecutors = mock(BackgroundExecutors.class);
+        when(backgroundExecutors.newFixedPool(anyString(), anyInt())).thenReturn(worker);
+
+        return new PayrollImportJob(payrollImportRepo, accountRepo, hotAccountService,
+                batchService(velocityGuard), backgroundExecutors, workDir.toString(), 500, 100_000, 1000, 1);
+    }
+
+    // the real batch posting, writing to mocks. The callback runs inline and rows get ids like generated keys
+    private TransactionBatchServiceImpl batchService(VelocityGuard velocityGuard) {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<org.springframework.transaction.TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        AtomicLong nextId = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    KeyHolder keyHolder = invocation.getArgument(2);
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        keyHolder.getKeyList().add(Map.of("GENERATED_KEY", nextId.incrementAndGet()));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+
+        FxRateService fxRateService = mock(FxRateService.class);
+        when(fxRateService.convertTransfer(any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Transaction>getArgument(0).getAmount());
+
+        TransactionBatchServiceImpl service = new TransactionBatchServiceImpl(accountRepo, jdbcTemplate, transactionTemplate,
+                mock(TransactionNotifier.class), hotAccountService, mock(LedgerService.class), fxRateService, velocityGuard);
+        ReflectionTestUtils.setField(service, "chunkSize", 200);
+        return service;
+    }
+
+    // the shipped defaults
+    private static VelocityGuard velocityGuard(boolean exemptBulk) {
+        return new VelocityGuard(mock(JdbcTemplate.class), new SimpleMeterRegistry(), true, VelocityAction.REVIEW,
+                10, new BigDecimal("10000"), new BigDecimal("1000"), 16, 90, exemptBulk);
+    }
+
+    private void account(String accountNumber, String balance) {
+        accounts.put(accountNumber, Account.builder()
+                .id((long) accounts.size() + 1)
+                .accountNumber(accountNumber)
+                .balance(new BigDecimal(balance))
+                .currency(Currency.USD)
+                .status(AccountStatus.ACTIVE)
+                .build());
+    }
+
+    private static String employee(int i) {
+        return String.valueOf(2_000_000_000L + i);
+    }
+}
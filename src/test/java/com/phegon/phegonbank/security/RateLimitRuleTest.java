@@ -0,0 +1,86 @@
+package com.phegon.phegonbank.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitRuleTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fullBucketAllowsTheWholeLimitAtOnce() {
+        RateLimitFilter.Rule rule = RateLimitFilter.Rule.parse("POST /api/transactions/** user 3/60", meterRegistry);
+
+        assertThat(rule.acquire(1L, 100)).isZero();
+        assertThat(rule.acquire(1L, 100)).isZero();
+        assertThat(rule.acquire(1L, 100)).isZero();
+
+        // the next token is one interval (20s) away
+        long waitNanos = rule.acquire(1L, 100);
+        assertThat(waitNanos).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(20));
+    }
+
+    @Test
+    void bucketsAreKeptPerKey() {
+        RateLimitFilter.Rule rule = RateLimitFilter.Rule.parse("POST /api/auth/login ip 1/60", meterRegistry);
+
+        assertThat(rule.acquire("10.0.0.1", 100)).isZero();
+        assertThat(rule.acquire("10.0.0.1", 100)).isPositive();
+        assertThat(rule.acquire("10.0.0.2", 100)).isZero();
+    }
+
+    @Test
+    void tokensRefillOverThePeriod() throws InterruptedException {
+        // one token per second
+        RateLimitFilter.Rule rule = RateLimitFilter.Rule.parse("* /api/** user 2/2", meterRegistry);
+
+        assertThat(rule.acquire(1L, 100)).isZero();
+        assertThat(rule.acquire(1L, 100)).isZero();
+        assertThat(rule.acquire(1L, 100)).isPositive();
+
+        Thread.sleep(1_200);
+
+        assertThat(rule.acquire(1L, 100)).isZero();
+        assertThat(rule.acquire(1L, 100)).isPositive();
+    }
+
+    @Test
+    void failsOpenWhenTheBucketMapIsFull() {
+        RateLimitFilter.Rule rule = RateLimitFilter.Rule.parse("POST /api/auth/login ip 1/60", meterRegistry);
+
+        assertThat(rule.acquire("10.0.0.1", 1)).isZero();
+        assertThat(rule.acquire("10.0.0.2", 1)).isZero();
+        assertThat(rule.acquire("10.0.0.2", 1)).isZero();
+    }
+
+    @Test
+    void matchesMethodAndPath() {
+        RateLimitFilter.Rule rule = RateLimitFilter.Rule.parse("post /api/transactions/** user 30/60", meterRegistry);
+
+        assertThat(rule.matches("POST", "/api/transactions/batch")).isTrue();
+        assertThat(rule.matches("GET", "/api/transactions/batch")).isFalse();
+        assertThat(rule.matches("POST", "/api/accounts")).isFalse();
+    }
+
+    @Test
+    void zeroOrNegativeLimitsAreRejected() {
+        for (String rule : new String[]{"POST /api/** user 0/60", "POST /api/** user 30/0", "POST /api/** user -1/60"}) {
+            assertThatThrownBy(() -> RateLimitFilter.Rule.parse(rule, meterRegistry))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("must be positive");
+        }
+    }
+
+    @Test
+    void malformedRulesAreRejected() {
+        for (String rule : new String[]{"POST /api/**", "POST /api/** anyone 30/60", "POST /api/** user 30", "POST /api/** user x/60"}) {
+            assertThatThrownBy(() -> RateLimitFilter.Rule.parse(rule, meterRegistry))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
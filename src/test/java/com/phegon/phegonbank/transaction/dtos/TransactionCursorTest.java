@@ -0,0 +1,51 @@
+package com.phegon.phegonbank.transaction.dtos;
+
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionCursorTest {
+
+    @Test
+    void decodeReversesEncode() {
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2026, 9, 30, 14, 5, 7, 123_000_000), 4711);
+
+        assertThat(TransactionCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = new TransactionCursor(LocalDateTime.of(2026, 1, 2, 3, 4), Long.MAX_VALUE).encode();
+
+        assertThat(encoded).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void missingCursorStartsAtTheNewestRow() {
+        assertThat(TransactionCursor.decode(null)).isEqualTo(TransactionCursor.START);
+        assertThat(TransactionCursor.decode("  ")).isEqualTo(TransactionCursor.START);
+    }
+
+    @Test
+    void tamperedCursorIsRejected() {
+        String tamperedId = encode("2026-09-30T14:05|not-a-number");
+        String tamperedDate = encode("2026-13-45T99:00|42");
+        String noSeparator = encode("2026-09-30T14:05");
+
+        for (String cursor : new String[]{"not base64!", tamperedId, tamperedDate, noSeparator}) {
+            assertThatThrownBy(() -> TransactionCursor.decode(cursor))
+                    .isInstanceOf(BadRequestException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
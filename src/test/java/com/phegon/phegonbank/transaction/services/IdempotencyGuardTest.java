@@ -0,0 +1,237 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.enums.IdempotencyStatus;
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.exceptions.BadRequestException;
+import com.phegon.phegonbank.exceptions.TransactionConflictException;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.IdempotencyRecord;
+import com.phegon.phegonbank.transaction.repo.IdempotencyRecordRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyGuardTest {
+
+    private static final String USER = "jane@example.com";
+    private static final String KEY = "key-1";
+    private static final String SCOPED_KEY = USER + ":" + KEY;
+
+    private IdempotencyRecordRepo repo;
+    private IdempotencyGuard guard;
+    private final AtomicInteger postings = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(USER, null));
+        repo = repo();
+        guard = guard(repo);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void retryIsReplayedFromTheCacheWithoutPostingAgain() {
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.empty());
+
+        Response<?> first = guard.execute(KEY, request("100"), posting());
+        Response<?> retry = guard.execute(KEY, request("100.00"), posting());
+
+        assertThat(postings).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(first.getStatusCode());
+        assertThat(retry.getMessage()).isEqualTo(first.getMessage());
+        verify(repo, times(1)).findByScopedKey(SCOPED_KEY);
+    }
+
+    @Test
+    void completedRecordIsReplayedFromTheTable() {
+        IdempotencyRecord record = stored(IdempotencyStatus.COMPLETED, hashOf(request("100")));
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.of(record));
+
+        Response<?> response = guard.execute(KEY, request("100"), posting());
+
+        assertThat(postings).hasValue(0);
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getMessage()).isEqualTo("Transaction successful");
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        IdempotencyRecord record = stored(IdempotencyStatus.COMPLETED, hashOf(request("100")));
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.of(record));
+
+        assertThatThrownBy(() -> guard.execute(KEY, request("250"), posting()))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(postings).hasValue(0);
+    }
+
+    @Test
+    void activeClaimIsAConflict() {
+        IdempotencyRecord record = stored(IdempotencyStatus.IN_PROGRESS, hashOf(request("100")));
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.of(record));
+        when(repo.retakeStaleClaim(eq(SCOPED_KEY), any(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> guard.execute(KEY, request("100"), posting()))
+                .isInstanceOf(TransactionConflictException.class);
+        assertThat(postings).hasValue(0);
+    }
+
+    @Test
+    void staleClaimIsTakenOver() {
+        IdempotencyRecord record = stored(IdempotencyStatus.IN_PROGRESS, hashOf(request("100")));
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.of(record));
+        when(repo.retakeStaleClaim(eq(SCOPED_KEY), any(), any())).thenReturn(1);
+
+        Response<?> response = guard.execute(KEY, request("100"), posting());
+
+        assertThat(postings).hasValue(1);
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        // completed under the new token, not the dead attempt's
+        verify(repo).complete(eq(SCOPED_KEY), argThat(token -> !"dead-attempt".equals(token)), eq(200), eq("Transaction successful"));
+    }
+
+    @Test
+    void postingRollsBackWhenItsClaimWasTakenOver() {
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.empty());
+        when(repo.complete(anyString(), anyString(), anyInt(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> guard.execute(KEY, request("100"), posting()))
+                .isInstanceOf(TransactionConflictException.class);
+
+        // thrown inside the posting's transaction, so the posting rolls back with it
+        assertThat(postings).hasValue(1);
+        verify(repo).releaseClaim(eq(SCOPED_KEY), anyString());
+    }
+
+    @Test
+    void claimLostToAnotherInstanceIsAConflict() {
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.empty());
+        when(repo.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThatThrownBy(() -> guard.execute(KEY, request("100"), posting()))
+                .isInstanceOf(TransactionConflictException.class);
+        assertThat(postings).hasValue(0);
+    }
+
+    @Test
+    void failedPostingFreesTheKey() {
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> guard.execute(KEY, request("100"), () -> {
+            throw new BadRequestException("Insufficient balance");
+        })).isInstanceOf(BadRequestException.class);
+
+        verify(repo).releaseClaim(eq(SCOPED_KEY), anyString());
+        verify(repo, never()).complete(anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void expiredRecordIsDroppedAndThePostingRuns() {
+        IdempotencyRecord expired = stored(IdempotencyStatus.COMPLETED, "whatever");
+        expired.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(repo.findByScopedKey(SCOPED_KEY)).thenReturn(Optional.of(expired));
+
+        guard.execute(KEY, request("100"), posting());
+
+        verify(repo).deleteByScopedKey(SCOPED_KEY);
+        assertThat(postings).hasValue(1);
+    }
+
+    @Test
+    void blankKeyIsRejected() {
+        assertThatThrownBy(() -> guard.execute(" ", request("100"), posting()))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+
+    private Supplier<Response<?>> posting() {
+        return () -> {
+            postings.incrementAndGet();
+            return Response.builder().statusCode(200).message("Transaction successful").build();
+        };
+    }
+
+    // the hash is private, so let a throwaway guard store the request and read it off the claim.
+    // Call it before stubbing, it stubs a mock of its own
+    private static String hashOf(TransactionRequest request) {
+        IdempotencyRecordRepo scratch = repo();
+        when(scratch.findByScopedKey(anyString())).thenReturn(Optional.empty());
+        guard(scratch).execute(KEY, request,
+                () -> Response.builder().statusCode(200).build());
+
+        ArgumentCaptor<IdempotencyRecord> claim = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(scratch).saveAndFlush(claim.capture());
+        return claim.getValue().getRequestHash();
+    }
+
+    private static IdempotencyRecordRepo repo() {
+        IdempotencyRecordRepo repo = mock(IdempotencyRecordRepo.class);
+        when(repo.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repo.complete(anyString(), anyString(), anyInt(), any())).thenReturn(1);
+        return repo;
+    }
+
+    // the callback runs inline, there is no database to commit to
+    private static IdempotencyGuard guard(IdempotencyRecordRepo repo) {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        return new IdempotencyGuard(repo, transactionTemplate,
+                new TransactionRetryExecutor(new SimpleMeterRegistry(), 1, 0, 0), 24, 60, 100);
+    }
+
+    private static IdempotencyRecord stored(IdempotencyStatus status, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        return IdempotencyRecord.builder()
+                .scopedKey(SCOPED_KEY)
+                .requestHash(requestHash)
+                .status(status)
+                .responseStatusCode(status == IdempotencyStatus.COMPLETED ? 200 : null)
+                .responseMessage(status == IdempotencyStatus.COMPLETED ? "Transaction successful" : null)
+                .createdAt(now.minusMinutes(5))
+                .claimedAt(now.minusMinutes(5))
+                .claimToken("dead-attempt")
+                .expiresAt(now.plusHours(23))
+                .build();
+    }
+
+    private static TransactionRequest request(String amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(TransactionType.TRANSFER);
+        request.setAmount(new BigDecimal(amount));
+        request.setAccountNumber("1000000001");
+        request.setDestinationAccountNumber("2000000001");
+        request.setDescription("rent");
+        return request;
+    }
+}
@@ -0,0 +1,64 @@
+package com.phegon.phegonbank.transaction.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterTest {
+
+    // 6 buckets of 10s = a one minute window
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(6, 10_000);
+
+    @Test
+    void sumsEverythingInsideTheWindow() {
+        counter.add(1_000, 1);
+        counter.add(15_000, 2);
+        counter.add(59_999, 3);
+
+        assertThat(counter.sum(59_999)).isEqualTo(6);
+    }
+
+    @Test
+    void oldBucketsRotateOut() {
+        counter.add(1_000, 5);
+        counter.add(25_000, 7);
+
+        assertThat(counter.sum(59_000)).isEqualTo(12);
+        assertThat(counter.sum(60_000)).isEqualTo(7);  // the 0-10s bucket has left the window
+        assertThat(counter.sum(80_000)).isEqualTo(0);
+    }
+
+    @Test
+    void slotIsResetWhenReusedForANewBucket() {
+        counter.add(1_000, 5);
+        counter.add(61_000, 2); // same slot, one window later
+
+        assertThat(counter.sum(61_000)).isEqualTo(2);
+    }
+
+    @Test
+    void addOlderThanTheWindowIsIgnored() {
+        counter.add(61_000, 2);
+        counter.add(1_000, 5);
+
+        assertThat(counter.sum(61_000)).isEqualTo(2);
+    }
+
+    @Test
+    void removeTakesBackAnAdd() {
+        counter.add(1_000, 5);
+        counter.add(2_000, 3);
+        counter.remove(2_000, 3);
+
+        assertThat(counter.sum(2_000)).isEqualTo(5);
+    }
+
+    @Test
+    void removeAfterTheBucketRotatedIsIgnored() {
+        counter.add(1_000, 5);
+        counter.add(61_000, 2);
+        counter.remove(1_000, 5); // its slot now holds the 60-70s bucket
+
+        assertThat(counter.sum(61_000)).isEqualTo(2);
+    }
+}
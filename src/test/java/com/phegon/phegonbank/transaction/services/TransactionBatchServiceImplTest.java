@@ -0,0 +1,247 @@
+package com.phegon.phegonbank.transaction.services;
+
+import com.phegon.phegonbank.account.entity.Account;
+import com.phegon.phegonbank.account.repo.AccountRepo;
+import com.phegon.phegonbank.account.services.HotAccountService;
+import com.phegon.phegonbank.enums.AccountStatus;
+import com.phegon.phegonbank.enums.BatchMode;
+import com.phegon.phegonbank.enums.Currency;
+import com.phegon.phegonbank.enums.TransactionStatus;
+import com.phegon.phegonbank.enums.TransactionType;
+import com.phegon.phegonbank.fx.services.FxRateService;
+import com.phegon.phegonbank.ledger.services.LedgerService;
+import com.phegon.phegonbank.res.Response;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchItemResult;
+import com.phegon.phegonbank.transaction.dtos.TransactionBatchRequest;
+import com.phegon.phegonbank.transaction.dtos.TransactionRequest;
+import com.phegon.phegonbank.transaction.entity.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionBatchServiceImplTest {
+
+    private static final String ALICE = "1000000001";
+    private static final String BOB = "1000000002";
+    private static final String CAROL = "1000000003";
+    private static final String UNKNOWN = "1999999999";
+
+    private final AccountRepo accountRepo = mock(AccountRepo.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final LedgerService ledgerService = mock(LedgerService.class);
+    private final FxRateService fxRateService = mock(FxRateService.class);
+    private final VelocityGuard velocityGuard = mock(VelocityGuard.class);
+
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final List<List<String>> lockedSlices = new ArrayList<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private TransactionBatchServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        account(ALICE, "100.00");
+        account(BOB, "100.00");
+        account(CAROL, "100.00");
+
+        when(accountRepo.findAllForUpdate(any())).thenAnswer(invocation -> {
+            Collection<String> numbers = invocation.getArgument(0);
+            lockedSlices.add(List.copyOf(numbers));
+            return numbers.stream().map(accounts::get).filter(Objects::nonNull).toList();
+        });
+
+        // run the callback inline, there is no database to roll back
+        doAnswer(invocation -> {
+            invocation.<Consumer<org.springframework.transaction.TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // hand out ids the way the generated keys would come back
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class)))
+                .thenAnswer(invocation -> {
+                    BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                    KeyHolder keyHolder = invocation.getArgument(2);
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        keyHolder.getKeyList().add(Map.of("GENERATED_KEY", nextId.incrementAndGet()));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+
+        when(fxRateService.convertTransfer(any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Transaction>getArgument(0).getAmount());
+
+        service = new TransactionBatchServiceImpl(accountRepo, jdbcTemplate, transactionTemplate,
+                mock(TransactionNotifier.class), mock(HotAccountService.class), ledgerService, fxRateService, velocityGuard);
+        ReflectionTestUtils.setField(service, "chunkSize", 200);
+    }
+
+
+    @Test
+    void bestEffortReportsEachItem() {
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(BatchMode.BEST_EFFORT,
+                deposit(ALICE, "50"),
+                withdrawal(BOB, "1000"),
+                transfer(ALICE, UNKNOWN, "30"),
+                transfer(ALICE, BOB, "20")));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getStatus).containsExactly(
+                TransactionStatus.SUCCESS, TransactionStatus.FAILED, TransactionStatus.FAILED, TransactionStatus.SUCCESS);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getMessage).containsExactly(
+                null, "Insufficient balance", "Destination Account not found", null);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getTransactionId).containsExactly(
+                1L, null, null, 2L);
+        assertThat(response.getMeta()).containsEntry("succeeded", 2L).containsEntry("failed", 2L);
+
+        assertThat(accounts.get(ALICE).getBalance()).isEqualByComparingTo("130.00");
+        assertThat(accounts.get(BOB).getBalance()).isEqualByComparingTo("120.00");
+    }
+
+    @Test
+    void allOrNothingRejectsEveryItemWhenOneFails() {
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(BatchMode.ALL_OR_NOTHING,
+                deposit(ALICE, "50"),
+                withdrawal(BOB, "1000"),
+                transfer(ALICE, BOB, "20")));
+
+        assertThat(response.getStatusCode()).isEqualTo(400);
+        assertThat(response.getMessage()).isEqualTo("Batch rejected, no transaction was posted");
+        assertThat(response.getData()).allMatch(r -> r.getStatus() == TransactionStatus.FAILED && r.getTransactionId() == null);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getMessage).containsExactly(
+                "Rolled back, item 1 failed", "Insufficient balance", "Rolled back, item 1 failed");
+        verify(jdbcTemplate, never()).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+    }
+
+    @Test
+    void allOrNothingPostsEverythingWhenNothingFails() {
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(BatchMode.ALL_OR_NOTHING,
+                deposit(ALICE, "50"),
+                transfer(ALICE, BOB, "20")));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getData()).allMatch(r -> r.getStatus() == TransactionStatus.SUCCESS);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getIndex).containsExactly(0, 1);
+    }
+
+    @Test
+    void allOrNothingLocksTheWholeBatchOnceInAccountOrder() {
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+
+        service.createTransactions(batch(BatchMode.ALL_OR_NOTHING,
+                transfer(CAROL, BOB, "10"),
+                transfer(BOB, ALICE, "10"),
+                deposit(CAROL, "5")));
+
+        // one sorted pass, sliced by chunk size, before any chunk is applied
+        assertThat(lockedSlices).containsExactly(List.of(ALICE, BOB), List.of(CAROL));
+    }
+
+    @Test
+    void heldItemIsPendingInBestEffort() {
+        when(velocityGuard.checkBulk(argThat(r -> r != null && BOB.equals(r.getAccountNumber())))).thenReturn(true);
+
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(BatchMode.BEST_EFFORT,
+                withdrawal(BOB, "40"),
+                withdrawal(ALICE, "40")));
+
+        TransactionBatchItemResult held = response.getData().get(0);
+        assertThat(held.getStatus()).isEqualTo(TransactionStatus.PENDING);
+        assertThat(held.getTransactionId()).isNotNull();
+        assertThat(held.getMessage()).isEqualTo("Transaction is pending review");
+        assertThat(response.getData().get(1).getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(response.getMeta()).containsEntry("pending", 1L).containsEntry("failed", 0L);
+
+        // nothing moves until the review
+        assertThat(accounts.get(BOB).getBalance()).isEqualByComparingTo("100.00");
+        verify(ledgerService, never()).legsFor(argThat(t -> t.getStatus() == TransactionStatus.PENDING), any());
+    }
+
+    @Test
+    void heldItemRejectsAnAllOrNothingBatch() {
+        when(velocityGuard.checkBulk(any())).thenReturn(true);
+
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(BatchMode.ALL_OR_NOTHING,
+                deposit(ALICE, "10"),
+                withdrawal(BOB, "40")));
+
+        assertThat(response.getStatusCode()).isEqualTo(400);
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getMessage).containsExactly(
+                "Rolled back, item 1 failed", "Transaction needs review, the batch cannot be posted as a whole");
+    }
+
+    @Test
+    void nullModeFallsBackToBestEffort() {
+        Response<List<TransactionBatchItemResult>> response = service.createTransactions(batch(null,
+                deposit(ALICE, "10"),
+                deposit(UNKNOWN, "10")));
+
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getMeta()).containsEntry("mode", "BEST_EFFORT");
+        assertThat(response.getData()).extracting(TransactionBatchItemResult::getStatus).containsExactly(
+                TransactionStatus.SUCCESS, TransactionStatus.FAILED);
+    }
+
+
+    private void account(String accountNumber, String balance) {
+        accounts.put(accountNumber, Account.builder()
+                .id((long) accounts.size() + 1)
+                .accountNumber(accountNumber)
+                .balance(new BigDecimal(balance))
+                .currency(Currency.USD)
+                .status(AccountStatus.ACTIVE)
+                .build());
+    }
+
+    private static TransactionBatchRequest batch(BatchMode mode, TransactionRequest... items) {
+        TransactionBatchRequest request = new TransactionBatchRequest();
+        request.setMode(mode);
+        request.setTransactions(List.of(items));
+        return request;
+    }
+
+    private static TransactionRequest deposit(String account, String amount) {
+        return item(TransactionType.DEPOSIT, account, null, amount);
+    }
+
+    private static TransactionRequest withdrawal(String account, String amount) {
+        return item(TransactionType.WITHDRAWAL, account, null, amount);
+    }
+
+    private static TransactionRequest transfer(String from, String to, String amount) {
+        return item(TransactionType.TRANSFER, from, to, amount);
+    }
+
+    private static TransactionRequest item(TransactionType type, String account, String destination, String amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setTransactionType(type);
+        request.setAccountNumber(account);
+        request.setDestinationAccountNumber(destination);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}